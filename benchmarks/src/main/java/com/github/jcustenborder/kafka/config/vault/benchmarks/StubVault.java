@@ -0,0 +1,156 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault.benchmarks;
+
+import com.bettercloud.vault.json.Json;
+import com.bettercloud.vault.json.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand in for the Vault HTTP API. It answers token lookups and serves KV version 2
+ * secrets by the last segment of the requested path, so the same secret can be read with or
+ * without a prefix. Responses are rendered once so the server adds as little as possible to the
+ * measurements.
+ */
+public class StubVault implements Closeable {
+  private static final byte[] NOT_FOUND = "{\"errors\":[]}".getBytes(StandardCharsets.UTF_8);
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final Map<String, byte[]> secrets = new LinkedHashMap<>();
+  private final byte[] lookupSelf;
+  private final byte[] metadata;
+  final AtomicLong requests = new AtomicLong();
+
+  public StubVault() throws IOException {
+    this.lookupSelf = Json.object()
+        .add("data", Json.object()
+            .add("accessor", "accessor")
+            .add("creation_time", 0)
+            .add("creation_ttl", 0)
+            .add("display_name", "token")
+            .add("explicit_max_ttl", 0)
+            .add("id", "token")
+            .add("last_renewal_time", 0)
+            .add("metadata", Json.NULL)
+            .add("num_uses", 0)
+            .add("orphan", true)
+            .add("path", "auth/token/create")
+            .add("policies", Json.array("root"))
+            .add("renewable", false)
+            .add("ttl", 0)
+        ).toString().getBytes(StandardCharsets.UTF_8);
+    this.metadata = Json.object()
+        .add("data", Json.object().add("current_version", 1))
+        .toString().getBytes(StandardCharsets.UTF_8);
+    this.executor = Executors.newFixedThreadPool(16, runnable -> {
+      Thread thread = new Thread(runnable, "stub-vault");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+    this.server.setExecutor(this.executor);
+    this.server.createContext("/v1/", this::handle);
+  }
+
+  /**
+   * Method is used to add a secret with a number of generated keys.
+   *
+   * @param name      last segment of the path the secret is served under.
+   * @param keys      number of keys.
+   * @param valueSize number of characters in each value.
+   * @return this
+   */
+  public StubVault secret(String name, int keys, int valueSize) {
+    StringBuilder value = new StringBuilder(valueSize);
+    for (int i = 0; i < valueSize; i++) {
+      value.append((char) ('a' + i % 26));
+    }
+    JsonObject data = Json.object();
+    for (int i = 0; i < keys; i++) {
+      data.add(key(i), value.toString());
+    }
+    this.secrets.put(name, Json.object()
+        .add("lease_id", "")
+        .add("renewable", false)
+        .add("lease_duration", 0)
+        .add("data", Json.object()
+            .add("data", data)
+            .add("metadata", Json.object().add("version", 1))
+        ).toString().getBytes(StandardCharsets.UTF_8));
+    return this;
+  }
+
+  public static String key(int index) {
+    return "key" + index;
+  }
+
+  public StubVault start() {
+    this.server.start();
+    return this;
+  }
+
+  public String address() {
+    return String.format("http://%s:%s", this.server.getAddress().getHostString(), this.server.getAddress().getPort());
+  }
+
+  void handle(HttpExchange exchange) throws IOException {
+    this.requests.incrementAndGet();
+    try (InputStream input = exchange.getRequestBody()) {
+      while (input.read() != -1) {
+        // Drain the request so the connection can be reused.
+      }
+    }
+    final String path = exchange.getRequestURI().getPath();
+    final String name = path.substring(path.lastIndexOf('/') + 1);
+    byte[] body = null;
+    if (path.equals("/v1/auth/token/lookup-self")) {
+      body = this.lookupSelf;
+    } else if (path.contains("/data/")) {
+      body = this.secrets.get(name);
+    } else if (path.contains("/metadata/") && this.secrets.containsKey(name)) {
+      body = this.metadata;
+    }
+    final int status = null == body ? 404 : 200;
+    if (null == body) {
+      body = NOT_FOUND;
+    }
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(body);
+    }
+  }
+
+  @Override
+  public void close() {
+    this.server.stop(0);
+    this.executor.shutdownNow();
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault.benchmarks;
+
+import com.github.jcustenborder.kafka.config.vault.VaultConfigProvider;
+import org.apache.kafka.common.config.ConfigData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the ways a path is resolved by {@link VaultConfigProvider}. Cold reads go to the
+ * stub Vault on every call, warm reads are served from the cache.
+ * <p>
+ * This is a standalone Maven project and is not part of the provider's build, so it is not run by
+ * CI and no results from it are published. Install the provider with
+ * {@code mvn install -DskipTests}, then run {@code mvn package} in this directory and
+ * {@code java -jar target/benchmarks.jar}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VaultConfigProviderBenchmark {
+  static final String SMALL = "secret/small";
+  static final String LARGE = "secret/large";
+  static final String PREFIXED = "secret/staging/small";
+
+  @Param({"Pooled", "Driver"})
+  public String transport;
+
+  StubVault vault;
+  VaultConfigProvider cold;
+  VaultConfigProvider warm;
+  VaultConfigProvider prefixedCold;
+  VaultConfigProvider prefixedWarm;
+  Set<String> filter;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    this.vault = new StubVault()
+        .secret("small", 10, 32)
+        .secret("large", 1000, 32)
+        .start();
+    this.filter = new LinkedHashSet<>(Arrays.asList(
+        StubVault.key(0), StubVault.key(250), StubVault.key(500), StubVault.key(750), StubVault.key(999)
+    ));
+
+    Map<String, String> coldSettings = settings();
+    coldSettings.put("vault.cache.enabled", "false");
+    this.cold = provider(coldSettings);
+
+    Map<String, String> warmSettings = settings();
+    warmSettings.put("vault.prefetch.paths", SMALL + "," + LARGE);
+    this.warm = provider(warmSettings);
+
+    Map<String, String> prefixedColdSettings = settings();
+    prefixedColdSettings.put("vault.cache.enabled", "false");
+    prefixedColdSettings.put("vault.prefix", "secret/staging");
+    this.prefixedCold = provider(prefixedColdSettings);
+
+    Map<String, String> prefixedWarmSettings = settings();
+    prefixedWarmSettings.put("vault.prefix", "secret/staging");
+    prefixedWarmSettings.put("vault.prefetch.paths", PREFIXED);
+    this.prefixedWarm = provider(prefixedWarmSettings);
+  }
+
+  Map<String, String> settings() {
+    Map<String, String> result = new HashMap<>();
+    result.put("vault.address", this.vault.address());
+    result.put("vault.token", "token");
+    result.put("vault.kv.version", "2");
+    result.put("vault.http.transport", this.transport);
+    result.put("vault.session.shared.enabled", "false");
+    result.put("vault.token.renewal.enabled", "false");
+    result.put("vault.secret.minimum.ttl.ms", Long.toString(TimeUnit.HOURS.toMillis(1)));
+    return result;
+  }
+
+  static VaultConfigProvider provider(Map<String, String> settings) {
+    VaultConfigProvider result = new VaultConfigProvider();
+    result.configure(settings);
+    return result;
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    for (VaultConfigProvider provider : Arrays.asList(this.cold, this.warm, this.prefixedCold, this.prefixedWarm)) {
+      if (null != provider) {
+        provider.close();
+      }
+    }
+    this.vault.close();
+  }
+
+  @Benchmark
+  public ConfigData coldRead() {
+    return this.cold.get(SMALL);
+  }
+
+  @Benchmark
+  public ConfigData warmRead() {
+    return this.warm.get(SMALL);
+  }
+
+  @Benchmark
+  public ConfigData coldFilteredLargeSecret() {
+    return this.cold.get(LARGE, this.filter);
+  }
+
+  @Benchmark
+  public ConfigData warmFilteredLargeSecret() {
+    return this.warm.get(LARGE, this.filter);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public ConfigData concurrentColdReads() {
+    return this.cold.get(SMALL);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public ConfigData concurrentWarmReads() {
+    return this.warm.get(SMALL);
+  }
+
+  @Benchmark
+  public ConfigData prefixedColdRead() {
+    return this.prefixedCold.get(PREFIXED);
+  }
+
+  @Benchmark
+  public ConfigData prefixedWarmRead() {
+    return this.prefixedWarm.get(PREFIXED);
+  }
+}
@@ -17,17 +17,23 @@ package com.github.jcustenborder.kafka.config.vault;
 
 import com.bettercloud.vault.Vault;
 import com.bettercloud.vault.VaultException;
+import com.bettercloud.vault.response.AuthResponse;
 import com.bettercloud.vault.response.LookupResponse;
 import com.github.jcustenborder.kafka.config.vault.VaultConfigProviderConfig.VaultLoginBy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.StringJoiner;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,16 +41,28 @@ public class AuthHandlers {
   private static final Logger log = LoggerFactory.getLogger(AuthHandlers.class);
 
   static class AuthConfig {
+    /**
+     * Token returned by a login. Null if the configured token is used.
+     */
+    public final String token;
     public final boolean isRenewable;
+    /**
+     * Number of milliseconds the token is valid for. 0 if the token does not expire.
+     */
+    public final long ttlMs;
 
-    AuthConfig(boolean isRenewable) {
+    AuthConfig(String token, boolean isRenewable, long ttlMs) {
+      this.token = token;
       this.isRenewable = isRenewable;
+      this.ttlMs = ttlMs;
     }
 
     @Override
     public String toString() {
       return new StringJoiner(", ", AuthConfig.class.getSimpleName() + "[", "]")
+          .add("token=" + (null == token ? "null" : "[hidden]"))
           .add("isRenewable=" + isRenewable)
+          .add("ttlMs=" + ttlMs)
           .toString();
     }
   }
@@ -71,7 +89,9 @@ public class AuthHandlers {
 
   static {
     AuthHandler[] handlers = new AuthHandler[]{
-        new TokenAuthHandler()
+        new TokenAuthHandler(),
+        new AppRoleAuthHandler(),
+        new KubernetesAuthHandler()
     };
     Map<VaultLoginBy, AuthHandler> result = new LinkedHashMap<>();
     for (AuthHandler handler : handlers) {
@@ -93,6 +113,23 @@ public class AuthHandlers {
   }
 
 
+  /**
+   * Method is used to renew the token the client is configured with.
+   *
+   * @param vault client to renew the token of.
+   * @return the ttl of the renewed token.
+   * @throws VaultException thrown if the token could not be renewed.
+   */
+  static AuthConfig renew(Vault vault) throws VaultException {
+    AuthResponse authResponse = vault.auth().renewSelf();
+    dumpDebug(authResponse);
+    return new AuthConfig(
+        null,
+        authResponse.isAuthRenewable(),
+        TimeUnit.SECONDS.toMillis(authResponse.getAuthLeaseDuration())
+    );
+  }
+
   static void dumpDebug(Object input) {
     if (!log.isTraceEnabled()) {
       return;
@@ -130,24 +167,63 @@ public class AuthHandlers {
       dumpDebug(lookupResponse);
       log.info("Authenticated to Vault as {}: path: {}", lookupResponse.getDisplayName(), lookupResponse.getPath());
       return new AuthConfig(
-          lookupResponse.isRenewable()
+          null,
+          lookupResponse.isRenewable(),
+          TimeUnit.SECONDS.toMillis(lookupResponse.getTTL())
       );
     }
   }
 
-//  static class AppRoleAuthHandler implements AuthHandler {
-//
-//    @Override
-//    public VaultLoginBy[] supports() {
-//      return new VaultLoginBy[]{VaultLoginBy.AppRole};
-//    }
-//
-//    @Override
-//    public AuthConfig auth(VaultConfigProviderConfig config, Vault vault) throws VaultException {
-//
-
-//
-//      return null;
-//    }
-//  }
+  /**
+   * Method is used to convert the response of a login to an AuthConfig.
+   *
+   * @param authResponse response of the login.
+   * @return AuthConfig with the token that was returned.
+   */
+  static AuthConfig login(AuthResponse authResponse) {
+    dumpDebug(authResponse);
+    return new AuthConfig(
+        authResponse.getAuthClientToken(),
+        authResponse.isAuthRenewable(),
+        TimeUnit.SECONDS.toMillis(authResponse.getAuthLeaseDuration())
+    );
+  }
+
+  static class AppRoleAuthHandler implements AuthHandler {
+    @Override
+    public VaultLoginBy[] supports() {
+      return new VaultLoginBy[]{VaultLoginBy.AppRole};
+    }
+
+    @Override
+    public AuthConfig auth(VaultConfigProviderConfig config, Vault vault) throws VaultException {
+      AuthResponse authResponse = vault.auth().loginByAppRole(
+          config.appRolePath,
+          config.appRoleRoleId,
+          config.appRoleSecretId.value()
+      );
+      log.info("Authenticated to Vault with role id {}: path: auth/{}", config.appRoleRoleId, config.appRolePath);
+      return login(authResponse);
+    }
+  }
+
+  static class KubernetesAuthHandler implements AuthHandler {
+    @Override
+    public VaultLoginBy[] supports() {
+      return new VaultLoginBy[]{VaultLoginBy.Kubernetes};
+    }
+
+    @Override
+    public AuthConfig auth(VaultConfigProviderConfig config, Vault vault) throws VaultException {
+      final String jwt;
+      try {
+        jwt = new String(Files.readAllBytes(Paths.get(config.kubernetesJwtPath)), StandardCharsets.UTF_8).trim();
+      } catch (IOException ex) {
+        throw new VaultException(ex);
+      }
+      AuthResponse authResponse = vault.auth().loginByJwt(config.kubernetesPath, config.kubernetesRole, jwt);
+      log.info("Authenticated to Vault with role {}: path: auth/{}", config.kubernetesRole, config.kubernetesPath);
+      return login(authResponse);
+    }
+  }
 }
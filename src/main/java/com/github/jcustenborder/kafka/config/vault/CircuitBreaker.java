@@ -0,0 +1,127 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import org.apache.kafka.common.utils.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker for the requests sent to Vault. The breaker opens after a number of consecutive
+ * failures, and while it is open requests are rejected without calling Vault. Once the open period
+ * has passed a single request is let through to probe Vault. The breaker closes if the probe
+ * succeeds and opens again if it fails.
+ */
+class CircuitBreaker {
+  private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+  enum State {
+    Closed(0),
+    Open(1),
+    HalfOpen(2);
+
+    final int value;
+
+    State(int value) {
+      this.value = value;
+    }
+  }
+
+  private final int failureThreshold;
+  private final long openMs;
+  private final Time time;
+  private State state = State.Closed;
+  private int failures;
+  private long openedMs;
+  private long rejected;
+
+  CircuitBreaker(int failureThreshold, long openMs, Time time) {
+    this.failureThreshold = failureThreshold;
+    this.openMs = openMs;
+    this.time = time;
+  }
+
+  /**
+   * Method is used to determine if a request can be sent to Vault. Every request that is allowed
+   * must be followed by a call to {@link #onSuccess()}, {@link #onFailure()} or {@link #release()}.
+   *
+   * @return true if the request can be sent.
+   */
+  public synchronized boolean tryAcquire() {
+    switch (this.state) {
+      case Closed:
+        return true;
+      case Open:
+        if (this.time.milliseconds() >= this.openedMs + this.openMs) {
+          log.info("tryAcquire() - Circuit breaker is half open. Sending a request to check if Vault has recovered.");
+          this.state = State.HalfOpen;
+          return true;
+        }
+        break;
+      default:
+        break;
+    }
+    this.rejected++;
+    return false;
+  }
+
+  public synchronized void onSuccess() {
+    if (State.Closed != this.state) {
+      log.info("onSuccess() - Vault has recovered. Closing circuit breaker.");
+    }
+    this.state = State.Closed;
+    this.failures = 0;
+  }
+
+  public synchronized void onFailure() {
+    this.failures++;
+    if (State.HalfOpen == this.state || (State.Closed == this.state && this.failures >= this.failureThreshold)) {
+      log.warn(
+          "onFailure() - Opening circuit breaker after {} consecutive failure(s). Requests will fail fast for {} ms.",
+          this.failures,
+          this.openMs
+      );
+      this.state = State.Open;
+      this.openedMs = this.time.milliseconds();
+    }
+  }
+
+  /**
+   * Method is used when a request that was allowed did not reach Vault, for example because it
+   * could not be sent. The outcome says nothing about Vault, so a half open breaker is opened again
+   * without waiting for another open period and the next request is let through as the probe.
+   */
+  public synchronized void release() {
+    if (State.HalfOpen == this.state) {
+      this.state = State.Open;
+    }
+  }
+
+  public synchronized State state() {
+    return this.state;
+  }
+
+  /**
+   * @return number of milliseconds until the breaker will let a probe through.
+   */
+  public synchronized long retryInMs() {
+    return Math.max(0L, this.openedMs + this.openMs - this.time.milliseconds());
+  }
+
+  public synchronized long rejected() {
+    return this.rejected;
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.VaultException;
+import com.bettercloud.vault.response.LogicalResponse;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * {@link VaultTransport} that sends requests through a {@link CircuitBreaker}. Requests are rejected
+ * with a {@link VaultException} while the breaker is open. Failures that the {@link Retrier} would
+ * retry, such as connection failures and 5xx responses, count against the breaker. Any response
+ * from Vault, including 403 and 404, counts as a success. A request that fails without reaching
+ * Vault counts as neither.
+ */
+class CircuitBreakerTransport implements VaultTransport {
+  private final VaultTransport transport;
+  private final CircuitBreaker circuitBreaker;
+
+  CircuitBreakerTransport(VaultTransport transport, CircuitBreaker circuitBreaker) {
+    this.transport = transport;
+    this.circuitBreaker = circuitBreaker;
+  }
+
+  @Override
+  public CompletableFuture<LogicalResponse> read(String path, int engineVersion, Integer version) {
+    return execute(() -> this.transport.read(path, engineVersion, version));
+  }
+
+  @Override
+  public CompletableFuture<Secret> readSecret(String path, int engineVersion, Integer version, Set<String> keys) {
+    return execute(() -> this.transport.readSecret(path, engineVersion, version, keys));
+  }
+
+  @Override
+  public CompletableFuture<LogicalResponse> list(String path, int engineVersion) {
+    return execute(() -> this.transport.list(path, engineVersion));
+  }
+
+  <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> request) {
+    if (!this.circuitBreaker.tryAcquire()) {
+      CompletableFuture<T> result = new CompletableFuture<>();
+      result.completeExceptionally(
+          new CircuitBreakerOpenException(
+              String.format(
+                  "Circuit breaker is open because Vault requests are failing. Retrying in %s ms.",
+                  this.circuitBreaker.retryInMs()
+              )
+          )
+      );
+      return result;
+    }
+    final CompletableFuture<T> result;
+    try {
+      result = request.get();
+    } catch (RuntimeException ex) {
+      this.circuitBreaker.release();
+      throw ex;
+    }
+    return result.whenComplete((response, ex) -> {
+      Throwable cause = null != ex ? SingleFlight.unwrap(ex) : null;
+      if (null == cause) {
+        this.circuitBreaker.onSuccess();
+      } else if (!(cause instanceof VaultException)) {
+        this.circuitBreaker.release();
+      } else if (Retrier.isRetryable((VaultException) cause)) {
+        this.circuitBreaker.onFailure();
+      } else {
+        this.circuitBreaker.onSuccess();
+      }
+    });
+  }
+
+  @Override
+  public void close() {
+    this.transport.close();
+  }
+
+  /**
+   * Thrown when a request is rejected by the circuit breaker.
+   */
+  static class CircuitBreakerOpenException extends VaultException {
+    private static final long serialVersionUID = 1L;
+
+    CircuitBreakerOpenException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.Vault;
+import com.bettercloud.vault.VaultException;
+import com.bettercloud.vault.api.Logical;
+import com.bettercloud.vault.response.LogicalResponse;
+import com.bettercloud.vault.rest.RestResponse;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Transport that reads secrets with the Logical api of the Vault driver.
+ */
+class DriverTransport implements VaultTransport {
+  private final Vault kvV1Vault;
+  private final Vault kvV2Vault;
+  private final int retryInterval;
+  private final Executor executor;
+  private final Retrier retrier;
+  private final VaultMetrics metrics;
+
+  DriverTransport(Vault kvV1Vault, Vault kvV2Vault, int retryInterval, Executor executor, Retrier retrier, VaultMetrics metrics) {
+    this.kvV1Vault = kvV1Vault;
+    this.kvV2Vault = kvV2Vault;
+    this.retryInterval = retryInterval;
+    this.executor = executor;
+    this.retrier = retrier;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public CompletableFuture<LogicalResponse> read(String path, int engineVersion, Integer version) {
+    final Vault vault = 1 == engineVersion ? this.kvV1Vault : this.kvV2Vault;
+    // Retries are handled by the Retrier so the driver does not sleep between attempts.
+    return this.retrier.execute(path, this.executor, instrumented(path, retryCount -> {
+      Logical logical = vault.withRetries(0, this.retryInterval)
+          .logical();
+      return null == version ? logical.read(path) : logical.read(path, true, version);
+    }));
+  }
+
+  @Override
+  public CompletableFuture<LogicalResponse> list(String path, int engineVersion) {
+    final Vault vault = 1 == engineVersion ? this.kvV1Vault : this.kvV2Vault;
+    return this.retrier.execute(path, this.executor, instrumented(path, retryCount -> vault.withRetries(0, this.retryInterval)
+        .logical()
+        .list(path)
+    ));
+  }
+
+  /**
+   * Records the response of every attempt. The driver returns 4xx responses to the caller, so 429
+   * is thrown to have the request retried.
+   */
+  Retrier.Attempt<LogicalResponse> instrumented(String path, Retrier.Attempt<LogicalResponse> attempt) {
+    return retryCount -> {
+      final LogicalResponse response;
+      try {
+        response = attempt.call(retryCount);
+      } catch (VaultException ex) {
+        this.metrics.recordResponse(path, ex.getHttpStatusCode(), 0L);
+        throw ex;
+      }
+      if (null == response || null == response.getRestResponse()) {
+        return response;
+      }
+      final RestResponse restResponse = response.getRestResponse();
+      this.metrics.recordResponse(path, restResponse.getStatus(), null == restResponse.getBody() ? 0L : restResponse.getBody().length);
+      if (429 == restResponse.getStatus()) {
+        throw new VaultException("Vault responded with HTTP status code: 429", 429);
+      }
+      return response;
+    };
+  }
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.SslConfig;
+import com.bettercloud.vault.VaultConfig;
+import com.bettercloud.vault.VaultException;
+import com.bettercloud.vault.api.Logical;
+import com.bettercloud.vault.api.LogicalUtilities;
+import com.bettercloud.vault.response.LogicalResponse;
+import com.bettercloud.vault.rest.RestResponse;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transport that reads secrets over HTTP connections that are reused between requests.
+ *
+ * The Vault driver creates a new {@link SSLSocketFactory} for every request. The JDK only reuses a
+ * kept-alive connection if it was created by the same socket factory, so every read pays for a new
+ * connection. This transport uses a single socket factory so connections are returned to the JDK
+ * keep-alive cache and TLS sessions are resumed. Responses are always read to the end and closed so
+ * the connection can be reused. The number of requests in flight is bounded by the pool size.
+ *
+ * Secrets are parsed by {@link SecretParser} as the response is read rather than being buffered and
+ * parsed by the driver, which decodes the body twice.
+ */
+class HttpTransport implements VaultTransport {
+  private static final HostnameVerifier TRUST_ALL_HOSTNAMES = (hostname, session) -> true;
+  private final VaultConfig vaultConfig;
+  private final SSLSocketFactory sslSocketFactory;
+  private final boolean sslVerify;
+  private final Semaphore permits;
+  private final int connectTimeoutMs;
+  private final int readTimeoutMs;
+  private final Executor executor;
+  private final Retrier retrier;
+  private final VaultMetrics metrics;
+
+  HttpTransport(VaultConfig vaultConfig, int poolSize, int connectTimeoutMs, int readTimeoutMs, Executor executor, Retrier retrier, VaultMetrics metrics) {
+    this.vaultConfig = vaultConfig;
+    this.permits = new Semaphore(poolSize, true);
+    this.connectTimeoutMs = connectTimeoutMs;
+    this.readTimeoutMs = readTimeoutMs;
+    this.executor = executor;
+    this.retrier = retrier;
+    this.metrics = metrics;
+    SslConfig sslConfig = vaultConfig.getSslConfig();
+    this.sslVerify = null == sslConfig || sslConfig.isVerify();
+    this.sslSocketFactory = sslSocketFactory(sslConfig, this.sslVerify);
+  }
+
+  static SSLSocketFactory sslSocketFactory(SslConfig sslConfig, boolean sslVerify) {
+    try {
+      if (!sslVerify) {
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, new TrustManager[]{new TrustAllTrustManager()}, null);
+        return sslContext.getSocketFactory();
+      } else if (null != sslConfig && null != sslConfig.getSslContext()) {
+        return sslConfig.getSslContext().getSocketFactory();
+      } else {
+        return SSLContext.getDefault().getSocketFactory();
+      }
+    } catch (GeneralSecurityException ex) {
+      throw new IllegalStateException("Exception thrown while configuring ssl", ex);
+    }
+  }
+
+  String url(String path, int engineVersion, Integer version) {
+    StringBuilder builder = new StringBuilder(this.vaultConfig.getAddress())
+        .append("/v1/");
+    if (2 == engineVersion) {
+      builder.append(LogicalUtilities.adjustPathForReadOrWrite(path, this.vaultConfig.getPrefixPathDepth(), Logical.logicalOperations.readV2));
+    } else {
+      builder.append(path);
+    }
+    if (null != version) {
+      builder.append("?version=").append(version);
+    }
+    return builder.toString();
+  }
+
+  @Override
+  public CompletableFuture<LogicalResponse> read(String path, int engineVersion, Integer version) {
+    final String url = url(path, engineVersion, version);
+    final Logical.logicalOperations operation = 2 == engineVersion ?
+        Logical.logicalOperations.readV2 : Logical.logicalOperations.readV1;
+    return execute(path, url, operation);
+  }
+
+  @Override
+  public CompletableFuture<LogicalResponse> list(String path, int engineVersion) {
+    final Logical.logicalOperations operation = 2 == engineVersion ?
+        Logical.logicalOperations.listV2 : Logical.logicalOperations.listV1;
+    final String url = this.vaultConfig.getAddress() + "/v1/" +
+        LogicalUtilities.adjustPathForList(path, this.vaultConfig.getPrefixPathDepth(), operation);
+    return execute(path, url, operation);
+  }
+
+  @Override
+  public CompletableFuture<Secret> readSecret(String path, int engineVersion, Integer version, Set<String> keys) {
+    final String url = url(path, engineVersion, version);
+    return this.retrier.execute(path, this.executor, retryCount -> get(path, url, (status, contentType, body) ->
+        200 == status ? SecretParser.parse(body, engineVersion, keys) : Secret.status(status)
+    ));
+  }
+
+  CompletableFuture<LogicalResponse> execute(String path, String url, Logical.logicalOperations operation) {
+    return this.retrier.execute(path, this.executor, retryCount -> {
+      final RestResponse restResponse = get(path, url, (status, contentType, body) ->
+          new RestResponse(status, contentType, ByteStreams.toByteArray(body))
+      );
+      return new LogicalResponse(restResponse, retryCount, operation);
+    });
+  }
+
+  interface ResponseHandler<T> {
+    /**
+     * @param status      http status of the response.
+     * @param contentType content type of the response.
+     * @param body        body of the response. Anything that is not read is discarded.
+     * @return result of the request.
+     */
+    T handle(int status, String contentType, InputStream body) throws IOException;
+  }
+
+  /**
+   * Method is used to send a GET request to Vault. Like the driver, 4xx responses are passed to the
+   * handler. 429, 5xx and responses that could not be read are thrown so they can be retried.
+   */
+  <T> T get(String path, String url, ResponseHandler<T> handler) throws VaultException {
+    try {
+      if (!this.permits.tryAcquire(this.connectTimeoutMs, TimeUnit.MILLISECONDS)) {
+        throw new VaultException(
+            String.format("Timed out waiting %s ms for a connection to Vault.", this.connectTimeoutMs)
+        );
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new VaultException(e);
+    }
+    int status = 0;
+    CountingInputStream body = null;
+    try {
+      final HttpURLConnection connection = connect(url);
+      status = connection.getResponseCode();
+      try (InputStream inputStream = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+        body = new CountingInputStream(null == inputStream ? new ByteArrayInputStream(new byte[0]) : inputStream);
+        if (status != 200 && (429 == status || !(status >= 400 && status < 500))) {
+          throw new VaultException(
+              String.format(
+                  "Vault responded with HTTP status code: %s\nResponse body: %s",
+                  status,
+                  new String(ByteStreams.toByteArray(body), StandardCharsets.UTF_8)
+              ),
+              status
+          );
+        }
+        final T result = handler.handle(status, connection.getContentType(), body);
+        ByteStreams.exhaust(body);
+        return result;
+      }
+    } catch (SecretParser.MalformedResponseException ex) {
+      // Vault did respond, so the status is kept and the request is not retried.
+      throw new VaultException(ex.getMessage(), status);
+    } catch (IOException ex) {
+      status = 0;
+      throw new VaultException(ex);
+    } finally {
+      this.metrics.recordResponse(path, status, 0 == status || null == body ? 0L : body.getCount());
+      this.permits.release();
+    }
+  }
+
+  HttpURLConnection connect(String url) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    if (connection instanceof HttpsURLConnection) {
+      HttpsURLConnection httpsConnection = (HttpsURLConnection) connection;
+      httpsConnection.setSSLSocketFactory(this.sslSocketFactory);
+      if (!this.sslVerify) {
+        httpsConnection.setHostnameVerifier(TRUST_ALL_HOSTNAMES);
+      }
+    }
+    connection.setRequestMethod("GET");
+    connection.setConnectTimeout(this.connectTimeoutMs);
+    connection.setReadTimeout(this.readTimeoutMs);
+    connection.setUseCaches(false);
+    connection.setRequestProperty("Accept", "application/json");
+    connection.setRequestProperty("X-Vault-Request", "true");
+    final String token = this.vaultConfig.getToken();
+    if (!Strings.isNullOrEmpty(token)) {
+      connection.setRequestProperty("X-Vault-Token", token);
+    }
+    final String namespace = this.vaultConfig.getNameSpace();
+    if (!Strings.isNullOrEmpty(namespace)) {
+      connection.setRequestProperty("X-Vault-Namespace", namespace);
+    }
+    return connection;
+  }
+
+  static class TrustAllTrustManager implements X509TrustManager {
+    @Override
+    public void checkClientTrusted(X509Certificate[] chain, String authType) {
+    }
+
+    @Override
+    public void checkServerTrusted(X509Certificate[] chain, String authType) {
+    }
+
+    @Override
+    public X509Certificate[] getAcceptedIssuers() {
+      return new X509Certificate[0];
+    }
+  }
+}
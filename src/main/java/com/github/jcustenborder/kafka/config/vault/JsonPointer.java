@@ -0,0 +1,140 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.json.Json;
+import com.bettercloud.vault.json.JsonArray;
+import com.bettercloud.vault.json.JsonValue;
+import com.bettercloud.vault.json.ParseException;
+import org.apache.kafka.common.config.ConfigException;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Helpers for keys that address a field of a value that is a JSON document. For example
+ * `config#/credentials/password` returns the password field of the credentials object stored in
+ * the `config` key. The part after the `#` is a JSON Pointer as defined by RFC 6901.
+ */
+class JsonPointer {
+  static final String SEPARATOR = "#/";
+
+  /**
+   * Method is used to return where the pointer of a key starts.
+   *
+   * @param key key that was requested.
+   * @return index of the `#` or -1 if the key does not have a pointer.
+   */
+  static int index(String key) {
+    return key.indexOf(SEPARATOR);
+  }
+
+  /**
+   * Method is used to return the keys that need to be read from Vault to resolve the requested
+   * keys. A key that contains `#/` is kept as well in case it is the name of a key in the secret.
+   *
+   * @param keys keys that were requested.
+   * @return keys of the secret.
+   */
+  static Set<String> secretKeys(Set<String> keys) {
+    Set<String> result = null;
+    for (String key : keys) {
+      final int index = index(key);
+      if (index < 0) {
+        continue;
+      }
+      if (null == result) {
+        result = new HashSet<>(keys);
+      }
+      result.add(key.substring(0, index));
+    }
+    return null == result ? keys : result;
+  }
+
+  /**
+   * Method is used to parse the value of a key.
+   *
+   * @param key   key the value is stored under.
+   * @param value value of the key.
+   * @return parsed document.
+   * @throws ConfigException if the value is not valid JSON. The value is not included in the
+   *                         message because it is a secret.
+   */
+  static JsonValue parse(String key, String value) {
+    try {
+      return Json.parse(value);
+    } catch (ParseException ex) {
+      ConfigException exception = new ConfigException(
+          String.format("Value of key '%s' is not a JSON document so '%s' can not be used.", key, SEPARATOR)
+      );
+      exception.initCause(ex);
+      throw exception;
+    }
+  }
+
+  /**
+   * Method is used to return the value a pointer refers to.
+   *
+   * @param document document to search.
+   * @param pointer  JSON Pointer such as `/credentials/password`.
+   * @return the value as it would be returned by Vault, or null if the pointer does not refer to a
+   * value. Strings are returned as is and other values are returned as JSON.
+   */
+  static String value(JsonValue document, String pointer) {
+    JsonValue current = document;
+    int start = 1;
+    while (null != current && start <= pointer.length()) {
+      int end = pointer.indexOf('/', start);
+      if (end < 0) {
+        end = pointer.length();
+      }
+      final String token = unescape(pointer.substring(start, end));
+      if (current.isObject()) {
+        current = current.asObject().get(token);
+      } else if (current.isArray()) {
+        current = element(current.asArray(), token);
+      } else {
+        current = null;
+      }
+      start = end + 1;
+    }
+    if (null == current || current.isNull()) {
+      return null;
+    }
+    return current.isString() ? current.asString() : current.toString();
+  }
+
+  static JsonValue element(JsonArray array, String token) {
+    if (token.isEmpty() || token.length() > 9 || (token.length() > 1 && '0' == token.charAt(0))) {
+      return null;
+    }
+    for (int i = 0; i < token.length(); i++) {
+      final char c = token.charAt(i);
+      if (c < '0' || c > '9') {
+        return null;
+      }
+    }
+    final int index = Integer.parseInt(token);
+    return index < array.size() ? array.get(index) : null;
+  }
+
+  static String unescape(String token) {
+    if (token.indexOf('~') < 0) {
+      return token;
+    }
+    return token.replace("~1", "/").replace("~0", "~");
+  }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.api.LogicalUtilities;
+import com.bettercloud.vault.json.Json;
+import com.bettercloud.vault.json.JsonObject;
+import com.bettercloud.vault.json.JsonValue;
+import com.bettercloud.vault.response.LogicalResponse;
+import org.apache.kafka.common.config.ConfigException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Helpers for the KV version 2 secrets engine. The driver only exposes the data of a KV version 2
+ * secret so the version information is read from the response body.
+ */
+class KeyValueV2 {
+  static final String METADATA = "metadata";
+  static final String VERSION_QUALIFIER = "?version=";
+
+  /**
+   * Method is used to return the version a path is pinned to. For example `secret/app?version=7`
+   * is pinned to version 7 of `secret/app`.
+   *
+   * @param path path that was requested.
+   * @return pinned version or null if the path is not pinned.
+   * @throws ConfigException if the qualifier is not a positive version number.
+   */
+  static Integer pinnedVersion(String path) {
+    final int index = path.indexOf('?');
+    if (index < 0) {
+      return null;
+    }
+    Integer result = null;
+    if (path.startsWith(VERSION_QUALIFIER, index)) {
+      try {
+        result = Integer.parseInt(path.substring(index + VERSION_QUALIFIER.length()));
+      } catch (NumberFormatException ex) {
+        result = null;
+      }
+    }
+    if (null == result || result < 1) {
+      throw new ConfigException(
+          String.format("Path '%s' is not valid. A version is requested with '<path>%s<version>'.", path, VERSION_QUALIFIER)
+      );
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to remove the version qualifier from a path.
+   *
+   * @param path path that was requested.
+   * @return path of the secret.
+   */
+  static String unpinnedPath(String path) {
+    final int index = path.indexOf('?');
+    return index < 0 ? path : path.substring(0, index);
+  }
+
+  /**
+   * Method is used to return the path of the metadata endpoint for a secret.
+   *
+   * @param path            path of the secret.
+   * @param prefixPathDepth number of path segments used by the mount.
+   * @return path of the metadata endpoint.
+   */
+  static String metadataPath(String path, int prefixPathDepth) {
+    return LogicalUtilities.addQualifierToPath(Arrays.asList(path.split("/")), prefixPathDepth, METADATA);
+  }
+
+  /**
+   * Method is used to return the version of the secret from a KV version 2 read.
+   *
+   * @param logicalResponse response of the read.
+   * @return version of the secret or null if the response is not from a KV version 2 engine.
+   */
+  static Integer version(LogicalResponse logicalResponse) {
+    JsonObject data = data(logicalResponse);
+    if (null == data) {
+      return null;
+    }
+    JsonValue metadata = data.get(METADATA);
+    if (null == metadata || !metadata.isObject()) {
+      return null;
+    }
+    return integer(metadata.asObject().get("version"));
+  }
+
+  /**
+   * Method is used to return the current version of the secret from a metadata read.
+   *
+   * @param logicalResponse response of the read of the metadata endpoint.
+   * @return current version of the secret or null if it was not returned.
+   */
+  static Integer currentVersion(LogicalResponse logicalResponse) {
+    JsonObject data = data(logicalResponse);
+    return null == data ? null : integer(data.get("current_version"));
+  }
+
+  private static JsonObject data(LogicalResponse logicalResponse) {
+    byte[] body = logicalResponse.getRestResponse().getBody();
+    if (null == body || body.length == 0) {
+      return null;
+    }
+    JsonValue value = Json.parse(new String(body, StandardCharsets.UTF_8));
+    if (!value.isObject()) {
+      return null;
+    }
+    JsonValue data = value.asObject().get("data");
+    return null != data && data.isObject() ? data.asObject() : null;
+  }
+
+  private static Integer integer(JsonValue value) {
+    return null != value && value.isNumber() ? value.asInt() : null;
+  }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.utils.Time;
+
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded cache of the paths that Vault responded to with `404` or `403`. Entries expire after a
+ * fixed ttl so a secret that is created later is picked up without a restart.
+ */
+class NegativeCache {
+  private final Cache<SecretCache.Key, Entry> entries;
+
+  NegativeCache(long maxEntries, long ttlMs, Time time) {
+    this.entries = CacheBuilder.newBuilder()
+        .maximumSize(maxEntries)
+        .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+        .ticker(new Ticker() {
+          @Override
+          public long read() {
+            return time.nanoseconds();
+          }
+        })
+        .build();
+  }
+
+  /**
+   * Method is used to determine if a status should be cached.
+   *
+   * @param status http status returned by Vault.
+   * @return true if the status is `403` or `404`.
+   */
+  static boolean isCacheable(int status) {
+    return 403 == status || 404 == status;
+  }
+
+  /**
+   * Method is used to return the entry for the supplied key.
+   *
+   * @param key key to look up.
+   * @return the entry or null if the path has not failed recently.
+   */
+  public Entry get(SecretCache.Key key) {
+    return this.entries.getIfPresent(key);
+  }
+
+  public void put(SecretCache.Key key, int status) {
+    this.entries.put(key, new Entry(status));
+  }
+
+  public void invalidate(SecretCache.Key key) {
+    this.entries.invalidate(key);
+  }
+
+  public long size() {
+    return this.entries.size();
+  }
+
+  static final class Entry {
+    final int status;
+
+    Entry(int status) {
+      this.status = status;
+    }
+
+    /**
+     * Method is used to create the exception thrown for a lookup that is served from the cache.
+     *
+     * @param path path of the secret.
+     * @return exception.
+     */
+    ConfigException exception(String path) {
+      return SecretReader.statusException(path, this.status);
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", Entry.class.getSimpleName() + "[", "]")
+          .add("status=" + status)
+          .toString();
+    }
+  }
+}
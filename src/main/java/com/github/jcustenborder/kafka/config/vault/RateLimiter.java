@@ -0,0 +1,62 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.utils.Time;
+
+/**
+ * Limits the rate that requests are sent to Vault. Requests are spaced evenly at the configured
+ * rate. A request that arrives while the limit is reached reserves the next free slot and is
+ * told how long to wait, so requests are sent in the order they arrived and none are rejected.
+ */
+class RateLimiter {
+  private final double intervalMs;
+  private final Time time;
+  private final Sensor waitTime;
+  private double nextFreeMs;
+
+  /**
+   * @param permitsPerSecond number of requests per second.
+   * @param time             time.
+   * @param waitTime         sensor the wait time of every request is recorded to. Can be null.
+   */
+  RateLimiter(double permitsPerSecond, Time time, Sensor waitTime) {
+    this.intervalMs = 1000D / permitsPerSecond;
+    this.time = time;
+    this.waitTime = waitTime;
+    this.nextFreeMs = time.milliseconds();
+  }
+
+  /**
+   * Method is used to reserve a slot for a request.
+   *
+   * @return number of milliseconds the caller must wait before sending the request.
+   */
+  public long reserve() {
+    final long now = this.time.milliseconds();
+    final long result;
+    synchronized (this) {
+      final double slot = Math.max(now, this.nextFreeMs);
+      this.nextFreeMs = slot + this.intervalMs;
+      result = (long) Math.ceil(slot - now);
+    }
+    if (null != this.waitTime) {
+      this.waitTime.record(result, now);
+    }
+    return result;
+  }
+}
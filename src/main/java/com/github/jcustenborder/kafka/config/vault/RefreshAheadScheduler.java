@@ -0,0 +1,153 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import org.apache.kafka.common.utils.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Used to re-read cached secrets from Vault in the background before their ttl expires. Entries
+ * that were stored by a caller, or that were read by a caller since the last refresh, are reloaded
+ * once a fraction of their ttl has elapsed. If a refresh fails the last good value continues to be
+ * served until the entry is more than the configured amount of time past its expiration.
+ * <p>
+ * The loader must not block. Refreshes are started on the scheduler thread and the reads are run
+ * on the I/O executor, so a loader that waited for its read could use up every I/O thread while
+ * the reads it is waiting for are queued behind it.
+ */
+class RefreshAheadScheduler implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(RefreshAheadScheduler.class);
+  private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+  private final SecretCache cache;
+  private final Function<SecretCache.Key, CompletableFuture<SecretCache.Entry>> loader;
+  private final double ttlFraction;
+  private final long maxStaleMs;
+  private final long retryIntervalMs;
+  private final Time time;
+  private final ScheduledExecutorService executorService;
+
+  RefreshAheadScheduler(
+      SecretCache cache,
+      Function<SecretCache.Key, CompletableFuture<SecretCache.Entry>> loader,
+      double ttlFraction,
+      long maxStaleMs,
+      long retryIntervalMs,
+      Time time) {
+    this.cache = cache;
+    this.loader = loader;
+    this.ttlFraction = ttlFraction;
+    this.maxStaleMs = maxStaleMs;
+    this.retryIntervalMs = retryIntervalMs;
+    this.time = time;
+    ThreadFactory threadFactory = runnable -> {
+      Thread thread = new Thread(runnable, "vault-refresh-ahead-" + THREAD_COUNT.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+    this.executorService = Executors.newSingleThreadScheduledExecutor(threadFactory);
+  }
+
+  /**
+   * Method is used to schedule the refresh of an entry that was just stored in the cache.
+   *
+   * @param key   key of the entry.
+   * @param entry entry that was stored.
+   */
+  public void schedule(SecretCache.Key key, SecretCache.Entry entry) {
+    final long ttl = entry.expiresMs - entry.createdMs;
+    final long refreshAt = entry.createdMs + (long) (ttl * this.ttlFraction);
+    schedule(key, entry, refreshAt - this.time.milliseconds());
+  }
+
+  void schedule(SecretCache.Key key, SecretCache.Entry entry, long delayMs) {
+    if (this.executorService.isShutdown()) {
+      return;
+    }
+    log.trace("schedule() - Scheduling refresh of {} in {} ms", key, delayMs);
+    this.executorService.schedule(() -> refresh(key, entry), Math.max(0L, delayMs), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Method is used to start the refresh of an entry.
+   *
+   * @param key   key of the entry.
+   * @param entry entry that is due to be refreshed.
+   * @return future that is completed once the refresh has finished or failed.
+   */
+  CompletableFuture<Void> refresh(SecretCache.Key key, SecretCache.Entry entry) {
+    if (entry != this.cache.peek(key)) {
+      log.trace("refresh() - {} was replaced or evicted. Skipping refresh.", key);
+      return CompletableFuture.completedFuture(null);
+    }
+    if (!entry.stale && entry.refreshed && !entry.accessed) {
+      log.trace("refresh() - {} has not been read since the last refresh. Skipping refresh.", key);
+      return CompletableFuture.completedFuture(null);
+    }
+
+    CompletableFuture<SecretCache.Entry> result;
+    try {
+      result = this.loader.apply(key);
+    } catch (RuntimeException ex) {
+      result = new CompletableFuture<>();
+      result.completeExceptionally(ex);
+    }
+    return result.handle((e, ex) -> {
+      if (null != ex) {
+        failed(key, entry, SingleFlight.unwrap(ex));
+      }
+      return null;
+    });
+  }
+
+  void failed(SecretCache.Key key, SecretCache.Entry entry, Throwable ex) {
+    SecretCache.Entry staleEntry = entry;
+    if (!entry.stale) {
+      staleEntry = this.cache.extend(key, entry, entry.expiresMs + this.maxStaleMs);
+      if (null == staleEntry) {
+        return;
+      }
+    }
+    final long now = this.time.milliseconds();
+    staleEntry.retryAtMs = now + this.retryIntervalMs;
+    if (now + this.retryIntervalMs < staleEntry.expiresMs) {
+      log.warn(
+          "refresh() - Exception thrown while refreshing '{}'. Serving the last known value for up to {} ms.",
+          key.path,
+          staleEntry.expiresMs - now,
+          ex
+      );
+      schedule(key, staleEntry, this.retryIntervalMs);
+    } else {
+      log.error("refresh() - Exception thrown while refreshing '{}'. The last known value will expire.", key.path, ex);
+    }
+  }
+
+  @Override
+  public void close() {
+    this.executorService.shutdownNow();
+  }
+}
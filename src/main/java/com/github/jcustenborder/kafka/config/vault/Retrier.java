@@ -0,0 +1,178 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.VaultException;
+import org.apache.kafka.common.utils.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs an operation against Vault asynchronously and retries it when it fails with a retryable
+ * {@link VaultException}. The delay between attempts grows exponentially and is fully jittered so
+ * clients that failed at the same time do not retry at the same time. Retries stop once the
+ * maximum number of retries or the maximum elapsed time is reached, or when the shared
+ * {@link RetryBudget} is exhausted. Every attempt, including retries, takes a slot from the
+ * {@link RateLimiter} if one is configured. Retries and rate limited attempts are scheduled on a
+ * timer so no thread is held while waiting.
+ */
+class Retrier {
+  private static final Logger log = LoggerFactory.getLogger(Retrier.class);
+
+  interface Attempt<T> {
+    /**
+     * @param retryCount number of times the operation has been retried.
+     * @return result of the operation.
+     * @throws VaultException thrown if the operation failed. The operation is retried if
+     *                        {@link #isRetryable(VaultException)} returns true.
+     */
+    T call(int retryCount) throws VaultException;
+  }
+
+  private final ScheduledExecutorService timer;
+  private final int maxRetries;
+  private final long initialIntervalMs;
+  private final long maxIntervalMs;
+  private final long maxElapsedMs;
+  private final RetryBudget budget;
+  private final RateLimiter rateLimiter;
+  private final VaultMetrics metrics;
+  private final Time time;
+
+  Retrier(
+      ScheduledExecutorService timer,
+      int maxRetries,
+      long initialIntervalMs,
+      long maxIntervalMs,
+      long maxElapsedMs,
+      RetryBudget budget,
+      RateLimiter rateLimiter,
+      VaultMetrics metrics,
+      Time time) {
+    this.timer = timer;
+    this.maxRetries = maxRetries;
+    this.initialIntervalMs = initialIntervalMs;
+    this.maxIntervalMs = maxIntervalMs;
+    this.maxElapsedMs = maxElapsedMs;
+    this.budget = budget;
+    this.rateLimiter = rateLimiter;
+    this.metrics = metrics;
+    this.time = time;
+  }
+
+  /**
+   * Method is used to determine if a failure is transient. Connection failures, which do not have
+   * a status code, 429 and 5xx responses are retried. Other responses such as 403 and 404 will not
+   * change by trying again.
+   *
+   * @param ex exception thrown by the operation.
+   * @return true if the operation should be retried.
+   */
+  static boolean isRetryable(VaultException ex) {
+    final int status = ex.getHttpStatusCode();
+    return 0 == status || 429 == status || status >= 500;
+  }
+
+  /**
+   * Method is used to calculate the delay before a retry using exponential backoff with full jitter.
+   *
+   * @param retryCount number of the retry starting at 1.
+   * @param random     random number between 0 inclusive and 1 exclusive.
+   * @return delay in milliseconds.
+   */
+  long delay(int retryCount, double random) {
+    final int exponent = Math.min(retryCount - 1, 30);
+    final long ceiling = Math.min(this.maxIntervalMs, this.initialIntervalMs << exponent);
+    return (long) (ceiling * random);
+  }
+
+  /**
+   * Method is used to run an operation on the supplied executor, retrying it if it fails.
+   *
+   * @param description description of the operation used for logging.
+   * @param executor    executor the operation is run on.
+   * @param attempt     the operation.
+   * @param <T>         result type.
+   * @return future that is completed with the result, or the last exception once the operation can no longer be retried.
+   */
+  public <T> CompletableFuture<T> execute(String description, Executor executor, Attempt<T> attempt) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    attempt(description, executor, attempt, 0, this.time.milliseconds(), result);
+    return result;
+  }
+
+  <T> void attempt(String description, Executor executor, Attempt<T> attempt, int retryCount, long startedMs, CompletableFuture<T> result) {
+    final long waitMs = null != this.rateLimiter ? this.rateLimiter.reserve() : 0L;
+    if (waitMs > 0L) {
+      log.trace("attempt() - Rate limit reached. Waiting {} ms to send {}.", waitMs, description);
+      schedule(() -> send(description, executor, attempt, retryCount, startedMs, result), waitMs, result);
+    } else {
+      send(description, executor, attempt, retryCount, startedMs, result);
+    }
+  }
+
+  <T> void send(String description, Executor executor, Attempt<T> attempt, int retryCount, long startedMs, CompletableFuture<T> result) {
+    try {
+      executor.execute(() -> {
+        try {
+          result.complete(attempt.call(retryCount));
+        } catch (VaultException ex) {
+          retry(description, executor, attempt, retryCount + 1, startedMs, result, ex);
+        } catch (RuntimeException | Error ex) {
+          result.completeExceptionally(ex);
+        }
+      });
+    } catch (RejectedExecutionException ex) {
+      result.completeExceptionally(ex);
+    }
+  }
+
+  <T> void retry(String description, Executor executor, Attempt<T> attempt, int retryCount, long startedMs, CompletableFuture<T> result, VaultException ex) {
+    if (!isRetryable(ex) || retryCount > this.maxRetries) {
+      result.completeExceptionally(ex);
+      return;
+    }
+    final long delay = delay(retryCount, ThreadLocalRandom.current().nextDouble());
+    if (this.time.milliseconds() + delay - startedMs > this.maxElapsedMs) {
+      log.debug("retry() - {} failed. Not retrying because it would exceed {} ms.", description, this.maxElapsedMs, ex);
+      result.completeExceptionally(ex);
+      return;
+    }
+    if (!this.budget.tryAcquire()) {
+      log.warn("retry() - {} failed. Not retrying because the retry budget is exhausted.", description, ex);
+      result.completeExceptionally(ex);
+      return;
+    }
+    log.debug("retry() - {} failed. Retry {} of {} in {} ms.", description, retryCount, this.maxRetries, delay, ex);
+    this.metrics.recordRetry(description);
+    schedule(() -> attempt(description, executor, attempt, retryCount, startedMs, result), delay, result);
+  }
+
+  void schedule(Runnable task, long delayMs, CompletableFuture<?> result) {
+    try {
+      this.timer.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException ex) {
+      result.completeExceptionally(ex);
+    }
+  }
+}
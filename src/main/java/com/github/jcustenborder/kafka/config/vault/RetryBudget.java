@@ -0,0 +1,63 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import org.apache.kafka.common.utils.Time;
+
+/**
+ * Token bucket that limits the number of retries sent to Vault. Every retry takes a token and
+ * tokens are added back at a fixed rate. When Vault is unavailable the bucket is drained quickly
+ * and further failures are returned without being retried, rather than every client retrying
+ * against a server that is already struggling. Each session owns its own budget, which is shared
+ * by the config providers that share the session.
+ */
+class RetryBudget {
+  private final double capacity;
+  private final double refillPerMs;
+  private final Time time;
+  private double tokens;
+  private long lastRefillMs;
+
+  RetryBudget(double capacity, double refillPerSecond, Time time) {
+    this.capacity = capacity;
+    this.refillPerMs = refillPerSecond / 1000D;
+    this.time = time;
+    this.tokens = capacity;
+    this.lastRefillMs = time.milliseconds();
+  }
+
+  /**
+   * Method is used to take a token from the bucket.
+   *
+   * @return true if a token was available and the operation can be retried.
+   */
+  public synchronized boolean tryAcquire() {
+    final long now = this.time.milliseconds();
+    if (now > this.lastRefillMs) {
+      this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefillMs) * this.refillPerMs);
+      this.lastRefillMs = now;
+    }
+    if (this.tokens < 1D) {
+      return false;
+    }
+    this.tokens -= 1D;
+    return true;
+  }
+
+  public synchronized double tokens() {
+    return this.tokens;
+  }
+}
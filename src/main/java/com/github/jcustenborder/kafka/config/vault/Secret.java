@@ -0,0 +1,110 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.VaultException;
+import com.bettercloud.vault.response.LogicalResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletionException;
+
+/**
+ * The result of reading a secret from a KV secrets engine.
+ */
+class Secret {
+  final int status;
+  final Map<String, String> data;
+  final Long leaseDuration;
+  private final Integer version;
+
+  Secret(int status, Map<String, String> data, Long leaseDuration, Integer version) {
+    this.status = status;
+    this.data = data;
+    this.leaseDuration = leaseDuration;
+    this.version = version;
+  }
+
+  /**
+   * Version of a KV version 2 secret.
+   *
+   * @return version or null if the secret is not stored in a KV version 2 engine.
+   */
+  Integer version() {
+    return this.version;
+  }
+
+  static Secret status(int status) {
+    return new Secret(status, Collections.emptyMap(), null, null);
+  }
+
+  /**
+   * Method is used to read a secret from a response returned by the Vault driver. The data has
+   * already been decoded by the driver so only the requested keys are copied.
+   *
+   * @param logicalResponse response of the read.
+   * @param engineVersion   version of the KV secrets engine the secret was read from.
+   * @param keys            keys to return. All keys are returned if this is empty.
+   * @return secret.
+   */
+  static Secret of(LogicalResponse logicalResponse, int engineVersion, Set<String> keys) {
+    final int status = logicalResponse.getRestResponse().getStatus();
+    if (200 != status) {
+      return status(status);
+    }
+    final Map<String, String> data;
+    if (null == keys || keys.isEmpty()) {
+      data = logicalResponse.getData();
+    } else {
+      data = new HashMap<>(Math.max(4, (int) (keys.size() / 0.75F) + 1));
+      for (String key : keys) {
+        final String value = logicalResponse.getData().get(key);
+        if (null != value) {
+          data.put(key, value);
+        }
+      }
+    }
+    // The body is copied by the driver, so the version is only read if it is used.
+    return new Secret(status, data, logicalResponse.getLeaseDuration(), null) {
+      @Override
+      Integer version() {
+        if (2 != engineVersion) {
+          return null;
+        }
+        try {
+          return SecretParser.version(new ByteArrayInputStream(logicalResponse.getRestResponse().getBody()));
+        } catch (IOException ex) {
+          throw new CompletionException(new VaultException(ex));
+        }
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return new StringJoiner(", ", Secret.class.getSimpleName() + "[", "]")
+        .add("status=" + status)
+        .add("keys=" + data.keySet())
+        .add("leaseDuration=" + leaseDuration)
+        .add("version=" + version())
+        .toString();
+  }
+}
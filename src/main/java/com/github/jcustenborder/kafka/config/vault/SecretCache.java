@@ -0,0 +1,345 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.json.JsonValue;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.math.LongMath;
+import org.apache.kafka.common.utils.Time;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of the data returned by Vault for a path. Entries are held until the ttl of the
+ * secret expires, which allows repeated lookups of the same path to be served without calling Vault.
+ */
+class SecretCache {
+  /**
+   * ttl of a secret that can not change, such as a pinned version of a KV version 2 secret.
+   */
+  static final long NEVER_EXPIRES = Long.MAX_VALUE;
+  private final Cache<Key, Entry> entries;
+  private final Time time;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  SecretCache(long maxEntries, Time time) {
+    this.time = time;
+    this.entries = CacheBuilder.newBuilder()
+        .maximumSize(maxEntries)
+        .removalListener(notification -> {
+          if (RemovalCause.SIZE == notification.getCause()) {
+            this.evictions.incrementAndGet();
+          }
+        })
+        .build();
+  }
+
+  /**
+   * Method is used to return the entry for the supplied key.
+   *
+   * @param key key to look up.
+   * @return the entry or null if there is not an entry or it has expired. Expired entries are
+   * retained so they can be revalidated with {@link #peek(Key)}.
+   */
+  public Entry get(Key key) {
+    Entry result = this.entries.getIfPresent(key);
+    if (null != result && result.isExpired(this.time.milliseconds())) {
+      result = null;
+    }
+    if (null == result) {
+      this.misses.incrementAndGet();
+    } else {
+      this.hits.incrementAndGet();
+      if (!result.accessed) {
+        result.accessed = true;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to store the data for a key.
+   *
+   * @param key  key to store the data under.
+   * @param data data that was returned from vault.
+   * @param ttl  number of milliseconds the data is valid for.
+   * @return the entry that was stored.
+   */
+  public Entry put(Key key, Map<String, String> data, long ttl) {
+    return put(key, data, null, ttl, false);
+  }
+
+  /**
+   * Method is used to store the data for a key.
+   *
+   * @param key       key to store the data under.
+   * @param data      data that was returned from vault.
+   * @param version   version of the secret if it is stored in a KV version 2 engine, otherwise null.
+   * @param ttl       number of milliseconds the data is valid for.
+   * @param refreshed true if the data was loaded in the background rather than by a caller.
+   * @return the entry that was stored.
+   */
+  public Entry put(Key key, Map<String, String> data, Integer version, long ttl, boolean refreshed) {
+    final long now = this.time.milliseconds();
+    Entry result = new Entry(data, version, now, LongMath.saturatedAdd(now, ttl), refreshed, false);
+    this.entries.put(key, result);
+    return result;
+  }
+
+  /**
+   * Method is used to keep serving the data of an entry past its expiration. This is used when
+   * the data could not be refreshed from Vault.
+   *
+   * @param key       key of the entry.
+   * @param entry     entry that is currently cached.
+   * @param expiresMs new expiration time for the entry.
+   * @return the stale entry, or null if the entry was replaced or removed in the meantime.
+   */
+  public Entry extend(Key key, Entry entry, long expiresMs) {
+    Entry result = new Entry(entry.data, entry.version, entry.createdMs, expiresMs, entry.refreshed, true);
+    return this.entries.asMap().replace(key, entry, result) ? result : null;
+  }
+
+  /**
+   * Method is used to store an entry that was restored from a snapshot. The creation time of the
+   * entry is retained so the age of the data is not reset.
+   *
+   * @param key       key to store the entry under.
+   * @param entry     entry that was restored.
+   * @param expiresMs expiration time for the entry.
+   * @return the entry that was stored.
+   */
+  public Entry restore(Key key, Entry entry, long expiresMs) {
+    Entry result = new Entry(entry.data, entry.version, entry.createdMs, expiresMs, true, false);
+    this.entries.put(key, result);
+    return result;
+  }
+
+  /**
+   * Method is used to return a copy of all of the entries in the cache.
+   *
+   * @return copy of the entries.
+   */
+  public Map<Key, Entry> entries() {
+    return ImmutableMap.copyOf(this.entries.asMap());
+  }
+
+  /**
+   * Method is used to return the entry for a key without checking expiration or updating the
+   * hit and miss counters.
+   *
+   * @param key key to look up.
+   * @return the entry or null if there is not an entry.
+   */
+  public Entry peek(Key key) {
+    return this.entries.getIfPresent(key);
+  }
+
+  public void invalidate(Key key) {
+    this.entries.invalidate(key);
+  }
+
+  public void invalidateAll() {
+    this.entries.invalidateAll();
+  }
+
+  public long size() {
+    return this.entries.size();
+  }
+
+  public long hits() {
+    return this.hits.get();
+  }
+
+  public long misses() {
+    return this.misses.get();
+  }
+
+  public long evictions() {
+    return this.evictions.get();
+  }
+
+  static final class Key {
+    final String namespace;
+    final String prefix;
+    final String path;
+    private final int hashCode;
+
+    Key(String namespace, String prefix, String path) {
+      this.namespace = namespace;
+      this.prefix = prefix;
+      this.path = path;
+      this.hashCode = Objects.hash(namespace, prefix, path);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return Objects.equals(namespace, key.namespace) &&
+          Objects.equals(prefix, key.prefix) &&
+          Objects.equals(path, key.path);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hashCode;
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", Key.class.getSimpleName() + "[", "]")
+          .add("namespace='" + namespace + "'")
+          .add("prefix='" + prefix + "'")
+          .add("path='" + path + "'")
+          .toString();
+    }
+  }
+
+  static final class Entry {
+    final Map<String, String> data;
+    final Integer version;
+    final long createdMs;
+    final long expiresMs;
+    final boolean refreshed;
+    final boolean stale;
+    volatile boolean accessed;
+    /**
+     * Time a stale entry can next be read again from Vault by a lookup.
+     */
+    volatile long retryAtMs;
+    /**
+     * Values that were parsed to resolve a {@link JsonPointer}. An entry holds the data of a single
+     * version of a secret so a value is only parsed once no matter how many fields are read from it.
+     */
+    final ConcurrentMap<String, JsonValue> documents = new ConcurrentHashMap<>();
+
+    Entry(Map<String, String> data, long createdMs, long expiresMs) {
+      this(data, null, createdMs, expiresMs, false, false);
+    }
+
+    Entry(Map<String, String> data, Integer version, long createdMs, long expiresMs, boolean refreshed, boolean stale) {
+      this.data = Collections.unmodifiableMap(data);
+      this.version = version;
+      this.createdMs = createdMs;
+      this.expiresMs = expiresMs;
+      this.refreshed = refreshed;
+      this.stale = stale;
+    }
+
+    /**
+     * Method is used to return the value of a key. Keys in the form `key#/json/pointer` return a
+     * field of the value stored in `key`. See {@link JsonPointer}.
+     *
+     * @param key key to look up.
+     * @return value or null if the secret does not contain the key or the field.
+     */
+    String value(String key) {
+      final String result = this.data.get(key);
+      if (null != result) {
+        return result;
+      }
+      final int index = JsonPointer.index(key);
+      if (index < 0) {
+        return null;
+      }
+      final String name = key.substring(0, index);
+      final String value = this.data.get(name);
+      if (null == value) {
+        return null;
+      }
+      final JsonValue document = this.documents.computeIfAbsent(name, n -> JsonPointer.parse(n, value));
+      return JsonPointer.value(document, key.substring(index + 1));
+    }
+
+    /**
+     * Method is used to return the requested keys of the secret. The data is immutable so it is
+     * returned as is when all keys are requested. Otherwise only the requested keys are looked up
+     * rather than scanning every key of the secret. A key that is stored with a null value is
+     * returned with a null value, a key that is not found is left out.
+     *
+     * @param keys keys to return. All keys are returned if this is null or empty.
+     * @return the requested keys and their values.
+     */
+    Map<String, String> project(Set<String> keys) {
+      if (null == keys || keys.isEmpty()) {
+        return this.data;
+      }
+      if (1 == keys.size()) {
+        final String key = keys.iterator().next();
+        final String value = value(key);
+        return null != value || this.data.containsKey(key) ?
+            Collections.singletonMap(key, value) : Collections.emptyMap();
+      }
+      final Map<String, String> result = new HashMap<>(Math.max(4, (int) (keys.size() / 0.75F) + 1));
+      for (String key : keys) {
+        final String value = value(key);
+        if (null != value || this.data.containsKey(key)) {
+          result.put(key, value);
+        }
+      }
+      return result;
+    }
+
+    boolean isImmutable() {
+      return NEVER_EXPIRES == this.expiresMs;
+    }
+
+    boolean isExpired(long now) {
+      return now >= this.expiresMs;
+    }
+
+    /**
+     * Number of milliseconds before the entry expires.
+     *
+     * @param now current time in milliseconds.
+     * @return remaining ttl in milliseconds.
+     */
+    long ttl(long now) {
+      return Math.max(0L, this.expiresMs - now);
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", Entry.class.getSimpleName() + "[", "]")
+          .add("keys=" + data.keySet())
+          .add("version=" + version)
+          .add("createdMs=" + createdMs)
+          .add("expiresMs=" + expiresMs)
+          .add("refreshed=" + refreshed)
+          .add("stale=" + stale)
+          .toString();
+    }
+  }
+}
@@ -0,0 +1,436 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.json.Json;
+import com.bettercloud.vault.json.ParseException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming parser for the response of a read from a KV secrets engine. The response is read from
+ * the stream as it arrives rather than being buffered and parsed into a tree. When keys are
+ * requested only their values are decoded, every other value is skipped.
+ *
+ * Values are returned the same way as the Vault driver. Strings are returned as is, other values
+ * as compact JSON and null values are left out.
+ */
+class SecretParser {
+  private static final int EOF = -1;
+  /**
+   * Above this many requested keys a name is looked up in the set rather than compared to each key.
+   */
+  private static final int LINEAR_MATCH_MAX_KEYS = 8;
+  private static final Set<String> NO_KEYS = Collections.unmodifiableSet(new HashSet<>());
+  private final InputStream input;
+  private final int engineVersion;
+  private final Set<String> keys;
+  private final byte[] buffer = new byte[8192];
+  private final StringBuilder name = new StringBuilder(64);
+  private final StringBuilder value = new StringBuilder(256);
+  private final Map<String, String> data;
+  private int position;
+  private int limit;
+  private ByteArrayOutputStream capture;
+  private Long leaseDuration;
+  private Integer version;
+
+  private SecretParser(InputStream input, int engineVersion, Set<String> keys) {
+    this.input = input;
+    this.engineVersion = engineVersion;
+    this.keys = keys;
+    this.data = keys.isEmpty() ? new HashMap<>() : new HashMap<>(Math.max(4, (int) (keys.size() / 0.75F) + 1));
+  }
+
+  /**
+   * Method is used to read a secret from the body of a successful response.
+   *
+   * @param input         body of the response.
+   * @param engineVersion version of the KV secrets engine the secret was read from.
+   * @param keys          keys to return. All keys are returned if this is null or empty.
+   * @return secret.
+   * @throws IOException if the body could not be read or is not valid JSON.
+   */
+  static Secret parse(InputStream input, int engineVersion, Set<String> keys) throws IOException {
+    SecretParser parser = new SecretParser(input, engineVersion, null == keys ? Collections.emptySet() : keys);
+    parser.readObject(parser::response);
+    return new Secret(200, parser.data, parser.leaseDuration, parser.version);
+  }
+
+  /**
+   * Method is used to read the version of a KV version 2 secret without decoding its data.
+   *
+   * @param input body of the response.
+   * @return version of the secret or null if it was not returned.
+   * @throws IOException if the body could not be read or is not valid JSON.
+   */
+  static Integer version(InputStream input) throws IOException {
+    SecretParser parser = new SecretParser(input, 2, NO_KEYS);
+    parser.readObject(parser::response);
+    return parser.version;
+  }
+
+  interface MemberHandler {
+    /**
+     * @param name name of the member. The value of the member must be read or skipped.
+     */
+    void member(StringBuilder name) throws IOException;
+  }
+
+  void response(StringBuilder name) throws IOException {
+    if ("lease_duration".contentEquals(name)) {
+      this.leaseDuration = readLong();
+    } else if ("data".contentEquals(name)) {
+      readObject(2 == this.engineVersion ? this::dataV2 : this::secretData);
+    } else {
+      skipValue();
+    }
+  }
+
+  void dataV2(StringBuilder name) throws IOException {
+    if ("data".contentEquals(name)) {
+      readObject(this::secretData);
+    } else if (KeyValueV2.METADATA.contentEquals(name)) {
+      readObject(this::metadata);
+    } else {
+      skipValue();
+    }
+  }
+
+  void metadata(StringBuilder name) throws IOException {
+    if ("version".contentEquals(name)) {
+      final Long result = readLong();
+      this.version = null == result ? null : result.intValue();
+    } else {
+      skipValue();
+    }
+  }
+
+  void secretData(StringBuilder name) throws IOException {
+    final String key = requested(name);
+    if (null == key) {
+      skipValue();
+      return;
+    }
+    final String result = readValue();
+    if (null != result) {
+      this.data.put(key, result);
+    }
+  }
+
+  String requested(StringBuilder name) {
+    if (NO_KEYS == this.keys) {
+      return null;
+    }
+    if (this.keys.isEmpty()) {
+      return name.toString();
+    }
+    if (this.keys.size() > LINEAR_MATCH_MAX_KEYS) {
+      final String result = name.toString();
+      return this.keys.contains(result) ? result : null;
+    }
+    for (String key : this.keys) {
+      if (key.contentEquals(name)) {
+        return key;
+      }
+    }
+    return null;
+  }
+
+  void readObject(MemberHandler handler) throws IOException {
+    skipWhitespace();
+    int c = read();
+    if ('n' == c) {
+      expectLiteral("ull");
+      return;
+    }
+    if ('{' != c) {
+      throw unexpected(c);
+    }
+    skipWhitespace();
+    if ('}' == peek()) {
+      read();
+      return;
+    }
+    while (true) {
+      skipWhitespace();
+      expect('"');
+      readString(this.name);
+      skipWhitespace();
+      expect(':');
+      skipWhitespace();
+      handler.member(this.name);
+      skipWhitespace();
+      c = read();
+      if ('}' == c) {
+        return;
+      } else if (',' != c) {
+        throw unexpected(c);
+      }
+    }
+  }
+
+  /**
+   * Method is used to read the value of a key of the secret.
+   *
+   * @return value or null if the value is null.
+   */
+  String readValue() throws IOException {
+    final int c = peek();
+    if ('"' == c) {
+      read();
+      readString(this.value);
+      return this.value.toString();
+    } else if ('n' == c) {
+      skipValue();
+      return null;
+    }
+    this.capture = new ByteArrayOutputStream(64);
+    final byte[] raw;
+    try {
+      skipValue();
+      raw = this.capture.toByteArray();
+    } finally {
+      this.capture = null;
+    }
+    try {
+      return Json.parse(new String(raw, StandardCharsets.UTF_8)).toString();
+    } catch (ParseException ex) {
+      throw new MalformedResponseException("Response from Vault is not valid JSON. " + ex.getMessage());
+    }
+  }
+
+  Long readLong() throws IOException {
+    final int c = peek();
+    if ('-' != c && (c < '0' || c > '9')) {
+      skipValue();
+      return null;
+    }
+    this.value.setLength(0);
+    while (true) {
+      final int next = peek();
+      if (EOF == next || ',' == next || '}' == next || ']' == next || isWhitespace(next)) {
+        break;
+      }
+      this.value.append((char) read());
+    }
+    try {
+      return Long.parseLong(this.value.toString());
+    } catch (NumberFormatException ex) {
+      try {
+        return (long) Double.parseDouble(this.value.toString());
+      } catch (NumberFormatException e) {
+        throw new MalformedResponseException(String.format("Response from Vault is not valid JSON. '%s' is not a number.", this.value));
+      }
+    }
+  }
+
+  void readString(StringBuilder into) throws IOException {
+    into.setLength(0);
+    while (true) {
+      int c = read();
+      if ('"' == c) {
+        return;
+      } else if ('\\' == c) {
+        into.append(escape());
+      } else if (c < 0x80) {
+        if (EOF == c || c < 0x20) {
+          throw unexpected(c);
+        }
+        into.append((char) c);
+      } else {
+        int extra;
+        int codePoint;
+        if ((c & 0xE0) == 0xC0) {
+          extra = 1;
+          codePoint = c & 0x1F;
+        } else if ((c & 0xF0) == 0xE0) {
+          extra = 2;
+          codePoint = c & 0x0F;
+        } else if ((c & 0xF8) == 0xF0) {
+          extra = 3;
+          codePoint = c & 0x07;
+        } else {
+          throw unexpected(c);
+        }
+        for (int i = 0; i < extra; i++) {
+          final int next = read();
+          if ((next & 0xC0) != 0x80) {
+            throw unexpected(next);
+          }
+          codePoint = (codePoint << 6) | (next & 0x3F);
+        }
+        into.appendCodePoint(codePoint);
+      }
+    }
+  }
+
+  char escape() throws IOException {
+    final int c = read();
+    switch (c) {
+      case '"':
+      case '\\':
+      case '/':
+        return (char) c;
+      case 'b':
+        return '\b';
+      case 'f':
+        return '\f';
+      case 'n':
+        return '\n';
+      case 'r':
+        return '\r';
+      case 't':
+        return '\t';
+      case 'u':
+        int result = 0;
+        for (int i = 0; i < 4; i++) {
+          final int digit = Character.digit(read(), 16);
+          if (digit < 0) {
+            throw new MalformedResponseException("Response from Vault is not valid JSON. Invalid unicode escape.");
+          }
+          result = (result << 4) | digit;
+        }
+        return (char) result;
+      default:
+        throw unexpected(c);
+    }
+  }
+
+  /**
+   * Method is used to move past a value without decoding it.
+   */
+  void skipValue() throws IOException {
+    skipWhitespace();
+    int c = read();
+    if ('"' == c) {
+      skipString();
+    } else if ('{' == c || '[' == c) {
+      int depth = 1;
+      while (depth > 0) {
+        c = read();
+        if ('"' == c) {
+          skipString();
+        } else if ('{' == c || '[' == c) {
+          depth++;
+        } else if ('}' == c || ']' == c) {
+          depth--;
+        } else if (EOF == c) {
+          throw unexpected(c);
+        }
+      }
+    } else if ('-' == c || ('0' <= c && c <= '9') || 't' == c || 'f' == c || 'n' == c) {
+      while (true) {
+        c = peek();
+        if (EOF == c || ',' == c || '}' == c || ']' == c || isWhitespace(c)) {
+          return;
+        }
+        read();
+      }
+    } else {
+      throw unexpected(c);
+    }
+  }
+
+  void skipString() throws IOException {
+    while (true) {
+      final int c = read();
+      if ('"' == c) {
+        return;
+      } else if ('\\' == c) {
+        read();
+      } else if (EOF == c) {
+        throw unexpected(c);
+      }
+    }
+  }
+
+  void expect(char expected) throws IOException {
+    final int c = read();
+    if (expected != c) {
+      throw unexpected(c);
+    }
+  }
+
+  void expectLiteral(String literal) throws IOException {
+    for (int i = 0; i < literal.length(); i++) {
+      expect(literal.charAt(i));
+    }
+  }
+
+  static boolean isWhitespace(int c) {
+    return ' ' == c || '\n' == c || '\r' == c || '\t' == c;
+  }
+
+  void skipWhitespace() throws IOException {
+    while (isWhitespace(peek())) {
+      this.position++;
+    }
+  }
+
+  int peek() throws IOException {
+    if (this.position == this.limit && !fill()) {
+      return EOF;
+    }
+    return this.buffer[this.position] & 0xFF;
+  }
+
+  int read() throws IOException {
+    if (this.position == this.limit && !fill()) {
+      return EOF;
+    }
+    final int result = this.buffer[this.position++] & 0xFF;
+    if (null != this.capture) {
+      this.capture.write(result);
+    }
+    return result;
+  }
+
+  boolean fill() throws IOException {
+    final int read = this.input.read(this.buffer, 0, this.buffer.length);
+    this.position = 0;
+    this.limit = Math.max(0, read);
+    return read > 0;
+  }
+
+  static MalformedResponseException unexpected(int c) {
+    return new MalformedResponseException(
+        EOF == c ?
+            "Response from Vault is not valid JSON. Unexpected end of response." :
+            String.format("Response from Vault is not valid JSON. Unexpected character 0x%02x.", c)
+    );
+  }
+
+  /**
+   * Thrown when the response is not valid JSON. Unlike other {@link IOException}s the response was
+   * received in full, so reading it again will not help.
+   */
+  static class MalformedResponseException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    MalformedResponseException(String message) {
+      super(message);
+    }
+  }
+}
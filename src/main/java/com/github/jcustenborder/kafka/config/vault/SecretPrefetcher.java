@@ -0,0 +1,159 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.google.common.base.CharMatcher;
+import org.apache.kafka.common.utils.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Reads the secrets configured with `vault.prefetch.paths` and `vault.prefetch.list.paths` into
+ * the cache when a session is opened.
+ */
+class SecretPrefetcher {
+  private static final Logger log = LoggerFactory.getLogger(SecretPrefetcher.class);
+  final VaultConfigProviderConfig config;
+  final SecretReader reader;
+  final Time time;
+
+  SecretPrefetcher(VaultConfigProviderConfig config, SecretReader reader, Time time) {
+    this.config = config;
+    this.reader = reader;
+    this.time = time;
+  }
+
+  /**
+   * Method is used to find the secrets stored under a folder and any of its sub folders.
+   *
+   * @param folder    folder to search.
+   * @param remaining number of paths that can still be returned.
+   * @return future completed with the paths of the secrets.
+   */
+  CompletableFuture<List<String>> discover(String folder, AtomicInteger remaining) {
+    final String parent = CharMatcher.is('/').trimTrailingFrom(folder);
+    return this.reader.list(parent).thenCompose(keys -> {
+      List<CompletableFuture<List<String>>> futures = new ArrayList<>();
+      List<String> paths = new ArrayList<>();
+      for (String key : keys) {
+        if (remaining.get() <= 0) {
+          break;
+        }
+        final String child = parent + "/" + key;
+        if (key.endsWith("/")) {
+          futures.add(discover(child, remaining));
+        } else if (remaining.getAndDecrement() > 0) {
+          paths.add(child);
+        }
+      }
+      return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+        for (CompletableFuture<List<String>> future : futures) {
+          paths.addAll(future.join());
+        }
+        return paths;
+      });
+    });
+  }
+
+  /**
+   * Method is used to read the configured paths into the cache in parallel so the first calls to
+   * get() do not wait on Vault. Failures are logged and do not prevent the session from opening.
+   */
+  void prefetch() {
+    if (this.config.prefetchPaths.isEmpty() && this.config.prefetchListPaths.isEmpty()) {
+      return;
+    }
+    if (null == this.reader.cache) {
+      log.warn(
+          "prefetch() - {} is disabled. Secrets will not be prefetched.",
+          VaultConfigProviderConfig.CACHE_ENABLED_CONFIG
+      );
+      return;
+    }
+    final long started = this.time.milliseconds();
+    final AtomicInteger remaining = new AtomicInteger(this.config.prefetchMaxPaths);
+    final Set<String> paths = new LinkedHashSet<>();
+    for (String path : this.config.prefetchPaths) {
+      if (remaining.getAndDecrement() > 0) {
+        paths.add(path);
+      }
+    }
+    List<CompletableFuture<Void>> futures = new ArrayList<>();
+    Set<String> requested = ConcurrentHashMap.newKeySet();
+    Consumer<String> prefetch = path -> {
+      if (requested.add(path)) {
+        futures.add(
+            this.reader.entryAsync(path, false).handle((entry, ex) -> {
+              if (null != ex) {
+                log.warn("prefetch() - Exception thrown reading '{}'", path, SingleFlight.unwrap(ex));
+              }
+              return null;
+            })
+        );
+      }
+    };
+    paths.forEach(prefetch);
+    List<CompletableFuture<Void>> discoveries = new ArrayList<>();
+    for (String folder : this.config.prefetchListPaths) {
+      discoveries.add(
+          discover(folder, remaining).handle((discovered, ex) -> {
+            if (null != ex) {
+              log.warn("prefetch() - Exception thrown listing '{}'", folder, SingleFlight.unwrap(ex));
+            } else {
+              synchronized (futures) {
+                discovered.forEach(prefetch);
+              }
+            }
+            return null;
+          })
+      );
+    }
+
+    final long deadline = started + this.config.prefetchTimeoutMs;
+    try {
+      CompletableFuture.allOf(discoveries.toArray(new CompletableFuture<?>[0]))
+          .get(Math.max(0L, deadline - this.time.milliseconds()), TimeUnit.MILLISECONDS);
+      CompletableFuture<?>[] reads;
+      synchronized (futures) {
+        reads = futures.toArray(new CompletableFuture<?>[0]);
+      }
+      CompletableFuture.allOf(reads)
+          .get(Math.max(0L, deadline - this.time.milliseconds()), TimeUnit.MILLISECONDS);
+      log.info("prefetch() - Prefetched {} path(s) in {} ms", reads.length, this.time.milliseconds() - started);
+    } catch (TimeoutException ex) {
+      log.warn(
+          "prefetch() - Prefetching did not complete within {} ms. The remaining paths will be cached when they are read.",
+          this.config.prefetchTimeoutMs
+      );
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException ex) {
+      log.warn("prefetch() - Exception thrown prefetching", ex);
+    }
+  }
+}
@@ -0,0 +1,624 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.VaultException;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.math.LongMath;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.utils.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads secrets for a {@link VaultSession}. Secrets are served from the cache when possible and
+ * concurrent reads of the same path are coalesced into a single read from Vault. Paths that were
+ * recently not found are failed from the negative cache, and the last known value of a secret is
+ * served while Vault is unavailable.
+ */
+class SecretReader {
+  private static final Logger log = LoggerFactory.getLogger(SecretReader.class);
+  static final String DIRECTORY_SUFFIX = "/*";
+  final VaultConfigProviderConfig config;
+  final VaultTransport transport;
+  final SecretCache cache;
+  final NegativeCache negativeCache;
+  final VaultMetrics metrics;
+  final int prefixPathDepth;
+  final Time time;
+  final SingleFlight<SecretCache.Key, SecretCache.Entry> inFlight = new SingleFlight<>();
+  final SingleFlight<ProjectedKey, SecretCache.Entry> projectedInFlight = new SingleFlight<>();
+  final Sensor staleServed;
+  final Sensor negativeCacheHits;
+  RefreshAheadScheduler refreshAheadScheduler;
+  SecretSnapshot snapshot;
+
+  /**
+   * @param config          configuration of the session.
+   * @param transport       transport secrets are read with.
+   * @param cache           cache of secrets. Null if the cache is disabled.
+   * @param negativeCache   cache of paths that were not found. Null if negative caching is disabled.
+   * @param metrics         metrics of the session.
+   * @param prefixPathDepth number of segments of a path that are the mount when it is not configured.
+   * @param time            time used to expire secrets.
+   */
+  SecretReader(
+      VaultConfigProviderConfig config,
+      VaultTransport transport,
+      SecretCache cache,
+      NegativeCache negativeCache,
+      VaultMetrics metrics,
+      int prefixPathDepth,
+      Time time) {
+    this.config = config;
+    this.transport = transport;
+    this.cache = cache;
+    this.negativeCache = negativeCache;
+    this.metrics = metrics;
+    this.prefixPathDepth = prefixPathDepth;
+    this.time = time;
+    this.staleServed = metrics.counter(
+        "stale-served-total",
+        "The number of times an expired secret was returned because Vault could not be read."
+    );
+    this.negativeCacheHits = null == negativeCache ? null : metrics.counter(
+        "negative-cache-hits-total",
+        "The number of lookups that failed without calling Vault because the path was recently not found or denied."
+    );
+  }
+
+  /**
+   * Method is used to return the secret stored at a path. The secret is served from the cache if
+   * possible. Concurrent reads of the same path are coalesced into a single read from Vault.
+   *
+   * @param path      path of the secret.
+   * @param refreshed true if the secret is read in the background rather than by a caller.
+   * @return future that is completed with the entry for the path.
+   */
+  CompletableFuture<SecretCache.Entry> entryAsync(String path, boolean refreshed) {
+    if (!refreshed) {
+      SecretCache.Entry entry = cachedEntry(path);
+      if (null != entry) {
+        return CompletableFuture.completedFuture(entry);
+      }
+    }
+    return loadEntryAsync(path, refreshed);
+  }
+
+  SecretCache.Entry cachedEntry(String path) {
+    return cachedEntry(path, this.metrics);
+  }
+
+  /**
+   * Method is used to return the secret stored at a path if it is cached.
+   *
+   * @param path    path of the secret.
+   * @param metrics metrics the lookup is recorded to.
+   * @return the entry or null if it is not cached or has expired.
+   */
+  SecretCache.Entry cachedEntry(String path, VaultMetrics metrics) {
+    if (null == this.cache) {
+      return null;
+    }
+    SecretCache.Entry entry = this.cache.get(key(path));
+    metrics.recordCacheLookup(path, null != entry);
+    if (null != entry && entry.stale) {
+      retryStale(path, entry);
+    }
+    return entry;
+  }
+
+  /**
+   * Method is used to read a secret that is being served stale again in the background, so the
+   * lookup after Vault has recovered returns the current value. Stale entries are returned to Kafka
+   * with the minimum ttl, and the secret is read at most once per minimum ttl.
+   *
+   * @param path  path of the secret.
+   * @param entry stale entry that was returned.
+   */
+  void retryStale(String path, SecretCache.Entry entry) {
+    final long now = this.time.milliseconds();
+    if (now < entry.retryAtMs) {
+      return;
+    }
+    entry.retryAtMs = now + this.config.minimumSecretTTL;
+    loadEntryAsync(path, true).whenComplete((result, ex) -> {
+      if (null != ex) {
+        log.debug("retryStale() - '{}' could not be read. Serving the last known value.", path, SingleFlight.unwrap(ex));
+      }
+    });
+  }
+
+  /**
+   * Method is used to read the secret stored at a path from Vault. Concurrent reads of the same
+   * path are coalesced into a single read. A path that was recently not found or denied fails
+   * without calling Vault unless it is read in the background.
+   *
+   * @param path      path of the secret.
+   * @param refreshed true if the secret is read in the background rather than by a caller.
+   * @return future that is completed with the entry for the path.
+   */
+  CompletableFuture<SecretCache.Entry> loadEntryAsync(String path, boolean refreshed) {
+    final SecretCache.Key key = key(path);
+    if (!refreshed) {
+      CompletableFuture<SecretCache.Entry> negative = negativeEntry(key);
+      if (null != negative) {
+        return negative;
+      }
+    }
+    return this.inFlight.executeAsync(key, () -> loadAsync(key, refreshed))
+        .exceptionally(ex -> staleIfError(key, ex));
+  }
+
+  /**
+   * Method is used to read the secret stored at a path for a lookup of some of its keys. When the
+   * cache is disabled only the requested keys are read from the response, so a lookup of a small
+   * key of a large secret does not decode every value. Otherwise the whole secret is read so it
+   * can be cached.
+   *
+   * @param path path of the secret.
+   * @param keys keys that were requested.
+   * @return future that is completed with the entry for the path.
+   */
+  CompletableFuture<SecretCache.Entry> lookupAsync(String path, Set<String> keys) {
+    if (null != this.cache || null == keys || keys.isEmpty() || path.endsWith(DIRECTORY_SUFFIX)) {
+      return loadEntryAsync(path, false);
+    }
+    final SecretCache.Key key = key(path);
+    final CompletableFuture<SecretCache.Entry> negative = negativeEntry(key);
+    if (null != negative) {
+      return negative;
+    }
+    // Lookups of the same keys of a path are coalesced the same way as reads of the whole secret.
+    return this.projectedInFlight.executeAsync(new ProjectedKey(key, keys), () -> {
+      CompletableFuture<SecretCache.Entry> result;
+      try {
+        final Integer pinnedVersion = pinnedVersion(path);
+        result = read(KeyValueV2.unpinnedPath(path), pinnedVersion, JsonPointer.secretKeys(keys)).thenApply(secret -> {
+          final long now = this.time.milliseconds();
+          final long ttl = null != pinnedVersion ? SecretCache.NEVER_EXPIRES : ttl(secret);
+          return new SecretCache.Entry(secret.data, pinnedVersion, now, LongMath.saturatedAdd(now, ttl), false, false);
+        });
+      } catch (ConfigException ex) {
+        result = new CompletableFuture<>();
+        result.completeExceptionally(ex);
+      }
+      return recordNegative(key, result);
+    });
+  }
+
+  /**
+   * Method is used to fail a lookup of a path that was recently not found or denied.
+   *
+   * @param key key of the secret.
+   * @return failed future or null if the path is not in the negative cache.
+   */
+  CompletableFuture<SecretCache.Entry> negativeEntry(SecretCache.Key key) {
+    if (null == this.negativeCache) {
+      return null;
+    }
+    NegativeCache.Entry negative = this.negativeCache.get(key);
+    if (null == negative) {
+      return null;
+    }
+    this.negativeCacheHits.record();
+    CompletableFuture<SecretCache.Entry> result = new CompletableFuture<>();
+    result.completeExceptionally(negative.exception(key.path));
+    return result;
+  }
+
+  /**
+   * Method is used to return the last known value of a secret when Vault is unavailable. The
+   * expired entry is served for up to `vault.stale.if.error.ms` after it expired. Errors returned
+   * by Vault such as a secret not being found are not masked.
+   *
+   * @param key key of the secret.
+   * @param ex  exception thrown loading the secret.
+   * @return the stale entry.
+   */
+  SecretCache.Entry staleIfError(SecretCache.Key key, Throwable ex) {
+    final Throwable cause = SingleFlight.unwrap(ex);
+    final Throwable vaultException = cause instanceof ConfigException ? cause.getCause() : cause;
+    SecretCache.Entry previous = null;
+    if (null != this.cache && this.config.staleIfErrorMs > 0 &&
+        vaultException instanceof VaultException && Retrier.isRetryable((VaultException) vaultException)) {
+      previous = this.cache.peek(key);
+    }
+    SecretCache.Entry result = null;
+    if (null != previous && !previous.stale) {
+      result = this.cache.extend(key, previous, previous.expiresMs + this.config.staleIfErrorMs);
+    }
+    final long now = this.time.milliseconds();
+    if (null == result || result.isExpired(now)) {
+      throw ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(cause);
+    }
+    result.retryAtMs = now + this.config.minimumSecretTTL;
+    log.warn(
+        "staleIfError() - Exception thrown reading '{}'. Serving the last known value for up to {} ms.",
+        key.path,
+        result.ttl(now),
+        cause
+    );
+    this.staleServed.record();
+    return result;
+  }
+
+  SecretCache.Entry entry(String path, boolean refreshed) {
+    return SingleFlight.join(entryAsync(path, refreshed));
+  }
+
+  SecretCache.Key key(String path) {
+    return new SecretCache.Key(this.config.namespace, this.config.prefix, path);
+  }
+
+  /**
+   * Method is used to read a secret from Vault in the background. Reads of the same path are
+   * coalesced with any read that is already in progress.
+   *
+   * @param key key of the secret.
+   * @return future that is completed with the entry for the path.
+   */
+  CompletableFuture<SecretCache.Entry> refresh(SecretCache.Key key) {
+    return this.inFlight.executeAsync(key, () -> loadAsync(key, true));
+  }
+
+  CompletableFuture<SecretCache.Entry> loadAsync(SecretCache.Key key, boolean refreshed) {
+    return recordNegative(key, readAsync(key, refreshed));
+  }
+
+  CompletableFuture<SecretCache.Entry> recordNegative(SecretCache.Key key, CompletableFuture<SecretCache.Entry> result) {
+    if (null == this.negativeCache) {
+      return result;
+    }
+    return result.whenComplete((entry, ex) -> {
+      if (null == ex) {
+        return;
+      }
+      final Throwable cause = SingleFlight.unwrap(ex).getCause();
+      if (cause instanceof VaultException && NegativeCache.isCacheable(((VaultException) cause).getHttpStatusCode())) {
+        this.negativeCache.put(key, ((VaultException) cause).getHttpStatusCode());
+      }
+    });
+  }
+
+  CompletableFuture<SecretCache.Entry> readAsync(SecretCache.Key key, boolean refreshed) {
+    if (key.path.endsWith(DIRECTORY_SUFFIX)) {
+      return readDirectory(key, refreshed);
+    }
+    final Integer pinnedVersion = pinnedVersion(key.path);
+    if (null != pinnedVersion) {
+      return readPinned(key, pinnedVersion, refreshed);
+    }
+    if (this.config.kvVersionCheckEnabled && null != this.cache) {
+      SecretCache.Entry previous = this.cache.peek(key);
+      if (null != previous && null != previous.version) {
+        return revalidate(key, previous, refreshed).thenCompose(result ->
+            null != result ? CompletableFuture.completedFuture(result) : readAndStore(key, refreshed)
+        );
+      }
+    }
+    return readAndStore(key, refreshed);
+  }
+
+  /**
+   * Method is used to read a version of a KV version 2 secret. A version of a secret can not
+   * change so it is cached until it is evicted and is never read again while it is cached.
+   */
+  CompletableFuture<SecretCache.Entry> readPinned(SecretCache.Key key, int version, boolean refreshed) {
+    final SecretCache.Entry previous = null != this.cache ? this.cache.peek(key) : null;
+    if (null != previous && previous.isImmutable()) {
+      return CompletableFuture.completedFuture(previous);
+    }
+    return read(KeyValueV2.unpinnedPath(key.path), version, null).thenApply(secret ->
+        store(key, secret.data, version, SecretCache.NEVER_EXPIRES, refreshed)
+    );
+  }
+
+  /**
+   * Method is used to return the version a path is pinned to.
+   *
+   * @param path path that was requested.
+   * @return pinned version or null if the path is not pinned.
+   * @throws ConfigException if the version is not valid or the path is not in a KV version 2 engine.
+   */
+  Integer pinnedVersion(String path) {
+    final Integer result = KeyValueV2.pinnedVersion(path);
+    if (null != result && 2 != this.config.kvVersion(KeyValueV2.unpinnedPath(path))) {
+      throw new ConfigException(
+          String.format("Path '%s' is not valid. Versions can only be requested from a KV version 2 secrets engine.", path)
+      );
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to read every secret stored directly under a folder, for example
+   * `secret/connectors/*`. The folder is listed and the secrets are read in parallel, each one
+   * through the cache. The keys of each secret are returned prefixed with the name of the secret,
+   * for example `connector-a/password`. The directory expires when the first of its secrets expires.
+   */
+  CompletableFuture<SecretCache.Entry> readDirectory(SecretCache.Key key, boolean refreshed) {
+    final String folder = key.path.substring(0, key.path.length() - DIRECTORY_SUFFIX.length());
+    return list(folder).thenCompose(keys -> {
+      final List<String> names = new ArrayList<>(keys.size());
+      for (String name : keys) {
+        if (!name.endsWith("/")) {
+          names.add(name);
+        }
+      }
+      if (names.isEmpty()) {
+        throw statusException(key.path, 404);
+      }
+      if (names.size() > this.config.directoryMaxPaths) {
+        throw new ConfigException(
+            String.format(
+                "'%s' contains %s secrets which is more than %s allowed by %s.",
+                key.path,
+                names.size(),
+                this.config.directoryMaxPaths,
+                VaultConfigProviderConfig.DIRECTORY_MAX_PATHS_CONFIG
+            )
+        );
+      }
+      final List<CompletableFuture<SecretCache.Entry>> futures = new ArrayList<>(names.size());
+      for (int i = 0; i < names.size(); i++) {
+        futures.add(new CompletableFuture<>());
+      }
+      final AtomicInteger next = new AtomicInteger();
+      final int parallelism = Math.min(names.size(), this.config.httpPoolSize);
+      for (int i = 0; i < parallelism; i++) {
+        readNext(folder, names, futures, next, refreshed);
+      }
+      return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+        final long now = this.time.milliseconds();
+        final Map<String, String> data = new LinkedHashMap<>();
+        long ttl = Long.MAX_VALUE;
+        for (int i = 0; i < names.size(); i++) {
+          final String name = names.get(i);
+          final SecretCache.Entry entry = futures.get(i).join();
+          entry.data.forEach((k, value) -> data.put(name + "/" + k, value));
+          ttl = Math.min(ttl, entry.ttl(now));
+        }
+        return store(key, data, null, ttl, refreshed);
+      });
+    });
+  }
+
+  /**
+   * Method is used to read the secrets of a folder one at a time. A directory lookup starts this
+   * for up to the size of the HTTP pool, so the number of secrets that are read from Vault at once
+   * is bounded no matter which transport or executor is used. Secrets that are cached do not use up
+   * a read.
+   *
+   * @param folder    path of the folder.
+   * @param names     names of the secrets in the folder.
+   * @param futures   futures that are completed with the secret for each name.
+   * @param next      index of the next name to read.
+   * @param refreshed true if the secrets are read in the background rather than by a caller.
+   */
+  void readNext(String folder, List<String> names, List<CompletableFuture<SecretCache.Entry>> futures, AtomicInteger next, boolean refreshed) {
+    int index;
+    while ((index = next.getAndIncrement()) < names.size()) {
+      final CompletableFuture<SecretCache.Entry> result = futures.get(index);
+      final CompletableFuture<SecretCache.Entry> entry = entryAsync(folder + "/" + names.get(index), refreshed);
+      entry.whenComplete((e, ex) -> {
+        if (null != ex) {
+          result.completeExceptionally(ex);
+        } else {
+          result.complete(e);
+        }
+      });
+      if (!entry.isDone()) {
+        entry.whenComplete((e, ex) -> readNext(folder, names, futures, next, refreshed));
+        return;
+      }
+    }
+  }
+
+  CompletableFuture<SecretCache.Entry> readAndStore(SecretCache.Key key, boolean refreshed) {
+    return read(key.path, null, null).thenApply(secret -> {
+      Integer version = this.config.kvVersionCheckEnabled ? secret.version() : null;
+      return store(key, secret.data, version, ttl(secret), refreshed);
+    });
+  }
+
+  /**
+   * Method is used to check the current version of a KV version 2 secret against the version that
+   * is cached. The secret data is only read if the version has changed.
+   *
+   * @return future completed with the new entry or null if the current version could not be determined.
+   */
+  CompletableFuture<SecretCache.Entry> revalidate(SecretCache.Key key, SecretCache.Entry previous, boolean refreshed) {
+    final String mount = this.config.kvMount(key.path);
+    final int depth = null == mount ? this.prefixPathDepth : mount.split("/").length;
+    final String metadataPath = KeyValueV2.metadataPath(key.path, depth);
+    return this.transport.read(metadataPath, 1, null).handle((logicalResponse, ex) -> {
+      if (null != ex) {
+        log.debug("revalidate() - Exception thrown reading '{}'", metadataPath, SingleFlight.unwrap(ex));
+        return null;
+      }
+      if (logicalResponse.getRestResponse().getStatus() != 200) {
+        log.debug("revalidate() - Reading '{}' returned {}", metadataPath, logicalResponse.getRestResponse().getStatus());
+        return null;
+      }
+      return logicalResponse;
+    }).thenCompose(logicalResponse -> {
+      final Integer currentVersion = null == logicalResponse ? null : KeyValueV2.currentVersion(logicalResponse);
+      if (null == currentVersion) {
+        return CompletableFuture.completedFuture(null);
+      }
+      if (currentVersion.equals(previous.version)) {
+        log.trace("revalidate() - '{}' is still at version {}", key.path, currentVersion);
+        // The ttl is not taken from the previous entry because its expiration may have been extended
+        // while Vault could not be read.
+        return CompletableFuture.completedFuture(
+            store(key, previous.data, previous.version, ttl(logicalResponse.getLeaseDuration()), refreshed)
+        );
+      }
+      log.trace("revalidate() - '{}' changed from version {} to {}", key.path, previous.version, currentVersion);
+      return read(key.path, currentVersion, null).thenApply(secret ->
+          store(key, secret.data, currentVersion, ttl(secret), refreshed)
+      );
+    });
+  }
+
+  SecretCache.Entry store(SecretCache.Key key, Map<String, String> data, Integer version, long ttl, boolean refreshed) {
+    if (null != this.negativeCache) {
+      this.negativeCache.invalidate(key);
+    }
+    if (null != this.cache) {
+      SecretCache.Entry result = this.cache.put(key, data, version, ttl, refreshed);
+      if (null != this.refreshAheadScheduler && !result.isImmutable()) {
+        this.refreshAheadScheduler.schedule(key, result);
+      }
+      if (null != this.snapshot) {
+        this.snapshot.markDirty();
+      }
+      return result;
+    } else {
+      final long now = this.time.milliseconds();
+      return new SecretCache.Entry(data, version, now, LongMath.saturatedAdd(now, ttl), refreshed, false);
+    }
+  }
+
+  long ttl(Secret secret) {
+    return ttl(secret.leaseDuration);
+  }
+
+  long ttl(Long leaseDuration) {
+    Long ttl = leaseDuration;
+    if (ttl == null || ttl <= 0) {
+      ttl = config.minimumSecretTTL;
+    }
+    return ttl;
+  }
+
+  /**
+   * Method is used to read a secret from Vault.
+   *
+   * @param path    path of the secret.
+   * @param version version of the secret or null for the latest version.
+   * @param keys    keys to read. Every key is read if this is null or empty.
+   * @return future completed with the secret or a ConfigException if it could not be read.
+   */
+  CompletableFuture<Secret> read(String path, Integer version, Set<String> keys) {
+    return this.transport.readSecret(path, this.config.kvVersion(path), version, keys).handle((secret, ex) -> {
+      if (null != ex) {
+        Throwable cause = SingleFlight.unwrap(ex);
+        if (cause instanceof VaultException) {
+          ConfigException configException = new ConfigException(
+              String.format("Exception thrown reading from '%s'", path)
+          );
+          configException.initCause(cause);
+          throw configException;
+        }
+        throw new CompletionException(cause);
+      }
+      if (secret.status == 200) {
+        return secret;
+      }
+      throw statusException(path, secret.status);
+    });
+  }
+
+  /**
+   * Method is used to create the exception thrown when Vault does not return a secret.
+   *
+   * @param path   path that was read.
+   * @param status http status returned by Vault.
+   * @return exception with a VaultException containing the status as the cause.
+   */
+  static ConfigException statusException(String path, int status) {
+    ConfigException result = new ConfigException(
+        403 == status ?
+            String.format("Permission denied reading Vault path '%s'", path) :
+            String.format("Vault path '%s' was not found", path)
+    );
+    result.initCause(new VaultException(String.format("Vault responded with HTTP status code: %s", status), status));
+    return result;
+  }
+
+  /**
+   * Method is used to list the keys stored under a path.
+   *
+   * @param path path to list.
+   * @return future completed with the keys. Keys of sub folders end with `/`. Empty if the path does not exist.
+   */
+  CompletableFuture<List<String>> list(String path) {
+    return this.transport.list(path, this.config.kvVersion(path)).handle((logicalResponse, ex) -> {
+      if (null != ex) {
+        Throwable cause = SingleFlight.unwrap(ex);
+        ConfigException configException = new ConfigException(
+            String.format("Exception thrown listing '%s'", path)
+        );
+        configException.initCause(cause);
+        throw configException;
+      }
+      final int status = logicalResponse.getRestResponse().getStatus();
+      if (404 == status) {
+        return Collections.emptyList();
+      } else if (200 != status) {
+        throw new ConfigException(
+            String.format("Listing '%s' returned status %s", path, status)
+        );
+      }
+      return logicalResponse.getListData();
+    });
+  }
+
+  /**
+   * Key of a lookup of some of the keys of a secret.
+   */
+  static final class ProjectedKey {
+    final SecretCache.Key key;
+    final Set<String> keys;
+    private final int hashCode;
+
+    ProjectedKey(SecretCache.Key key, Set<String> keys) {
+      this.key = key;
+      this.keys = ImmutableSet.copyOf(keys);
+      this.hashCode = 31 * key.hashCode() + this.keys.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ProjectedKey)) {
+        return false;
+      }
+      ProjectedKey that = (ProjectedKey) o;
+      return this.key.equals(that.key) && this.keys.equals(that.keys);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hashCode;
+    }
+  }
+}
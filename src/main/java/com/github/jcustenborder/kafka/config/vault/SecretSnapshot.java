@@ -0,0 +1,341 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import org.apache.kafka.common.utils.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Encrypted snapshot of the secret cache that is written to local disk. The snapshot is loaded
+ * when the config provider is configured so secrets can be served immediately after a restart
+ * while they are revalidated against Vault in the background.
+ *
+ * The file is written to a temporary file and atomically moved into place. The contents are
+ * encrypted with AES/GCM using a key derived from the configured password with PBKDF2.
+ *
+ * The snapshot records the identity of the configuration that wrote it, including the credentials
+ * used to authenticate to Vault. A snapshot written with a different identity is not restored, so
+ * secrets read with one set of credentials are never served to another.
+ */
+class SecretSnapshot {
+  private static final Logger log = LoggerFactory.getLogger(SecretSnapshot.class);
+  static final byte[] MAGIC = "VCPS".getBytes(StandardCharsets.US_ASCII);
+  static final byte FORMAT_VERSION = 2;
+  static final int SALT_LENGTH = 16;
+  static final int IV_LENGTH = 12;
+  static final int TAG_LENGTH_BITS = 128;
+  static final int KEY_ITERATIONS = 65536;
+
+  private final Path path;
+  private final char[] password;
+  private final byte[] identity;
+  private final long maxAgeMs;
+  private final Time time;
+  private final SecureRandom random = new SecureRandom();
+  private final AtomicBoolean dirty = new AtomicBoolean();
+  private ScheduledExecutorService executorService;
+
+  /**
+   * @param path     path of the snapshot file.
+   * @param password password the key of the snapshot is derived from.
+   * @param identity identity of the configuration, including its credentials.
+   * @param maxAgeMs maximum age of an entry that is restored.
+   * @param time     time used to determine the age of an entry.
+   */
+  SecretSnapshot(Path path, char[] password, byte[] identity, long maxAgeMs, Time time) {
+    this.path = path;
+    this.password = password;
+    this.identity = identity;
+    this.maxAgeMs = maxAgeMs;
+    this.time = time;
+  }
+
+  /**
+   * Method is used to load the snapshot into the cache and revalidate the restored entries
+   * against Vault in the background. Entries are restored with the supplied ttl so they are
+   * only served until they have been revalidated. Entries for a pinned version do not change, so
+   * they are restored without an expiration and are not revalidated.
+   *
+   * @param cache           cache to restore the entries to.
+   * @param loader          function used to read a secret from Vault.
+   * @param ttl             ttl of the restored entries.
+   * @param writeIntervalMs how often the snapshot should be written when the cache has changed.
+   */
+  public synchronized void start(
+      SecretCache cache,
+      Function<SecretCache.Key, SecretCache.Entry> loader,
+      long ttl,
+      long writeIntervalMs) {
+    this.executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "vault-snapshot");
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    Map<SecretCache.Key, SecretCache.Entry> restored;
+    try {
+      restored = read();
+    } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+      log.warn("start() - Exception thrown reading snapshot '{}'. Secrets will be read from Vault.", this.path, ex);
+      restored = new LinkedHashMap<>();
+    }
+    log.info("start() - Restored {} secret(s) from '{}'", restored.size(), this.path);
+    final long expiresMs = this.time.milliseconds() + ttl;
+    for (Map.Entry<SecretCache.Key, SecretCache.Entry> e : restored.entrySet()) {
+      final SecretCache.Entry entry = e.getValue();
+      cache.restore(e.getKey(), entry, entry.isImmutable() ? SecretCache.NEVER_EXPIRES : expiresMs);
+    }
+
+    for (Map.Entry<SecretCache.Key, SecretCache.Entry> e : restored.entrySet()) {
+      if (e.getValue().isImmutable()) {
+        continue;
+      }
+      final SecretCache.Key key = e.getKey();
+      this.executorService.submit(() -> {
+        try {
+          loader.apply(key);
+        } catch (RuntimeException ex) {
+          log.warn("start() - Exception thrown revalidating '{}'", key.path, ex);
+        }
+      });
+    }
+
+    this.executorService.scheduleWithFixedDelay(
+        () -> flush(cache),
+        writeIntervalMs,
+        writeIntervalMs,
+        TimeUnit.MILLISECONDS
+    );
+  }
+
+  /**
+   * Method is used to flag that the cache has changed and the snapshot should be written.
+   */
+  public void markDirty() {
+    this.dirty.set(true);
+  }
+
+  void flush(SecretCache cache) {
+    if (!this.dirty.getAndSet(false)) {
+      return;
+    }
+    try {
+      write(cache.entries());
+    } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+      log.warn("flush() - Exception thrown writing snapshot '{}'", this.path, ex);
+      this.dirty.set(true);
+    }
+  }
+
+  /**
+   * Method is used to stop the background work and write the snapshot if the cache has changed.
+   *
+   * @param cache cache to write.
+   */
+  public synchronized void close(SecretCache cache) {
+    if (null != this.executorService) {
+      this.executorService.shutdownNow();
+    }
+    flush(cache);
+  }
+
+  SecretKey key(byte[] salt) throws GeneralSecurityException {
+    SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+    PBEKeySpec spec = new PBEKeySpec(this.password, salt, KEY_ITERATIONS, 256);
+    try {
+      return new SecretKeySpec(factory.generateSecret(spec).getEncoded(), "AES");
+    } finally {
+      spec.clearPassword();
+    }
+  }
+
+  /**
+   * Method is used to write the supplied entries to the snapshot file.
+   *
+   * @param entries entries to write.
+   */
+  void write(Map<SecretCache.Key, SecretCache.Entry> entries) throws IOException, GeneralSecurityException {
+    ByteArrayOutputStream plain = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(plain)) {
+      output.writeInt(this.identity.length);
+      output.write(this.identity);
+      output.writeInt(entries.size());
+      for (Map.Entry<SecretCache.Key, SecretCache.Entry> e : entries.entrySet()) {
+        SecretCache.Key key = e.getKey();
+        SecretCache.Entry entry = e.getValue();
+        writeString(output, key.namespace);
+        writeString(output, key.prefix);
+        writeString(output, key.path);
+        output.writeInt(null == entry.version ? -1 : entry.version);
+        output.writeLong(entry.createdMs);
+        output.writeBoolean(entry.isImmutable());
+        output.writeInt(entry.data.size());
+        for (Map.Entry<String, String> data : entry.data.entrySet()) {
+          writeString(output, data.getKey());
+          writeString(output, data.getValue());
+        }
+      }
+    }
+
+    byte[] salt = new byte[SALT_LENGTH];
+    byte[] iv = new byte[IV_LENGTH];
+    this.random.nextBytes(salt);
+    this.random.nextBytes(iv);
+    Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+    cipher.init(Cipher.ENCRYPT_MODE, key(salt), new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+    cipher.updateAAD(MAGIC);
+    byte[] encrypted = cipher.doFinal(plain.toByteArray());
+
+    Path directory = this.path.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path temp = Files.createTempFile(directory, this.path.getFileName().toString(), ".tmp");
+    try {
+      try {
+        Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+      } catch (UnsupportedOperationException ex) {
+        log.trace("write() - Posix file permissions are not supported for '{}'", temp);
+      }
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 1 + SALT_LENGTH + IV_LENGTH);
+        header.put(MAGIC).put(FORMAT_VERSION).put(salt).put(iv);
+        header.flip();
+        while (header.hasRemaining()) {
+          channel.write(header);
+        }
+        ByteBuffer body = ByteBuffer.wrap(encrypted);
+        while (body.hasRemaining()) {
+          channel.write(body);
+        }
+        channel.force(true);
+      }
+      try {
+        Files.move(temp, this.path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException ex) {
+        Files.move(temp, this.path, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    log.debug("write() - Wrote {} secret(s) to '{}'", entries.size(), this.path);
+  }
+
+  /**
+   * Method is used to read the entries from the snapshot file. Entries that are older than the
+   * maximum age are skipped.
+   *
+   * @return entries that were read. Empty if the snapshot does not exist or was written with a
+   * different identity.
+   */
+  Map<SecretCache.Key, SecretCache.Entry> read() throws IOException, GeneralSecurityException {
+    Map<SecretCache.Key, SecretCache.Entry> result = new LinkedHashMap<>();
+    if (!Files.exists(this.path)) {
+      return result;
+    }
+
+    ByteBuffer plain;
+    try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.READ)) {
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      byte[] magic = new byte[MAGIC.length];
+      mapped.get(magic);
+      byte formatVersion = mapped.get();
+      if (!Arrays.equals(MAGIC, magic) || FORMAT_VERSION != formatVersion) {
+        throw new IOException(String.format("'%s' is not a valid snapshot.", this.path));
+      }
+      byte[] salt = new byte[SALT_LENGTH];
+      byte[] iv = new byte[IV_LENGTH];
+      mapped.get(salt);
+      mapped.get(iv);
+      Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+      cipher.init(Cipher.DECRYPT_MODE, key(salt), new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+      cipher.updateAAD(MAGIC);
+      plain = ByteBuffer.allocate(cipher.getOutputSize(mapped.remaining()));
+      cipher.doFinal(mapped, plain);
+      plain.flip();
+    }
+
+    byte[] identity = new byte[plain.getInt()];
+    plain.get(identity);
+    if (!MessageDigest.isEqual(this.identity, identity)) {
+      log.warn("read() - '{}' was written with different settings or credentials. Secrets will be read from Vault.", this.path);
+      return result;
+    }
+
+    final long oldest = this.time.milliseconds() - this.maxAgeMs;
+    final int count = plain.getInt();
+    for (int i = 0; i < count; i++) {
+      SecretCache.Key key = new SecretCache.Key(readString(plain), readString(plain), readString(plain));
+      int version = plain.getInt();
+      long createdMs = plain.getLong();
+      boolean immutable = plain.get() != 0;
+      int size = plain.getInt();
+      Map<String, String> data = new LinkedHashMap<>(size);
+      for (int j = 0; j < size; j++) {
+        data.put(readString(plain), readString(plain));
+      }
+      if (createdMs < oldest) {
+        log.trace("read() - Skipping {}. Created {} is older than {}", key, createdMs, oldest);
+        continue;
+      }
+      final long expiresMs = immutable ? SecretCache.NEVER_EXPIRES : createdMs;
+      result.put(key, new SecretCache.Entry(data, version < 0 ? null : version, createdMs, expiresMs, true, false));
+    }
+    return result;
+  }
+
+  static void writeString(DataOutputStream output, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  static String readString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Used to de-duplicate concurrent calls for the same key. The first caller for a key executes the
+ * supplied loader, every other caller that arrives while the load is outstanding waits for and
+ * shares the result or the exception of that load.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+class SingleFlight<K, V> {
+  private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  public V execute(K key, Supplier<V> loader) {
+    final CompletableFuture<V> future = new CompletableFuture<>();
+    final CompletableFuture<V> existing = this.inFlight.putIfAbsent(key, future);
+    if (null != existing) {
+      return join(existing);
+    }
+
+    try {
+      V result = loader.get();
+      future.complete(result);
+      return result;
+    } catch (RuntimeException | Error ex) {
+      future.completeExceptionally(ex);
+      throw ex;
+    } finally {
+      this.inFlight.remove(key, future);
+    }
+  }
+
+  /**
+   * Method is used to start an asynchronous load for a key, or return the load that is already
+   * outstanding for the key.
+   *
+   * @param key    key to load.
+   * @param loader starts the load.
+   * @return future that is completed with the result of the load.
+   */
+  public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> loader) {
+    final CompletableFuture<V> future = new CompletableFuture<>();
+    final CompletableFuture<V> existing = this.inFlight.putIfAbsent(key, future);
+    if (null != existing) {
+      return existing;
+    }
+
+    try {
+      loader.get().whenComplete((result, ex) -> {
+        this.inFlight.remove(key, future);
+        if (null == ex) {
+          future.complete(result);
+        } else {
+          future.completeExceptionally(unwrap(ex));
+        }
+      });
+    } catch (RuntimeException | Error ex) {
+      this.inFlight.remove(key, future);
+      future.completeExceptionally(ex);
+    }
+    return future;
+  }
+
+  /**
+   * Number of loads that are currently outstanding.
+   *
+   * @return number of keys being loaded.
+   */
+  public int size() {
+    return this.inFlight.size();
+  }
+
+  static Throwable unwrap(Throwable ex) {
+    Throwable result = ex;
+    while (result instanceof CompletionException && null != result.getCause()) {
+      result = result.getCause();
+    }
+    return result;
+  }
+
+  static <V> V join(CompletableFuture<V> future) {
+    try {
+      return future.join();
+    } catch (CompletionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw ex;
+    }
+  }
+}
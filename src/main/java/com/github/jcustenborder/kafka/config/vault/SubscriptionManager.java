@@ -0,0 +1,211 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.kafka.common.config.ConfigChangeCallback;
+import org.apache.kafka.common.config.ConfigData;
+import org.apache.kafka.common.utils.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Used to implement {@link org.apache.kafka.common.config.provider.ConfigProvider#subscribe(String, Set, ConfigChangeCallback)}.
+ * Subscribed paths are polled in the background and the callback is only called when the value of
+ * one of the subscribed keys has actually changed.
+ * <p>
+ * Secrets are read without holding a lock, so a subscribe does not wait for a poll and a slow read
+ * does not hold up the other paths. Each read takes a sequence number before it starts. A poll only
+ * compares against a subscription if its read started after the read the subscription was last
+ * updated from, so a subscription is never compared against a value older than the one it has.
+ */
+class SubscriptionManager implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(SubscriptionManager.class);
+
+  private final Function<String, SecretCache.Entry> loader;
+  private final long pollIntervalMs;
+  private final Time time;
+  private final ConcurrentMap<String, List<Subscription>> subscriptions = new ConcurrentHashMap<>();
+  private final AtomicLong sequence = new AtomicLong();
+  private ScheduledExecutorService executorService;
+
+  SubscriptionManager(Function<String, SecretCache.Entry> loader, long pollIntervalMs, Time time) {
+    this.loader = loader;
+    this.pollIntervalMs = pollIntervalMs;
+    this.time = time;
+  }
+
+  public void subscribe(String path, Set<String> keys, ConfigChangeCallback callback) {
+    Subscription subscription = new Subscription(keys, callback);
+    final long sequence = this.sequence.incrementAndGet();
+    String fingerprint = null;
+    try {
+      fingerprint = fingerprint(this.loader.apply(path).project(keys));
+    } catch (RuntimeException ex) {
+      log.warn("subscribe() - Exception thrown reading '{}'. The current value will be captured on the next poll.", path, ex);
+    }
+    subscription.update(sequence, fingerprint);
+    this.subscriptions.compute(path, (p, existing) -> {
+      List<Subscription> result = null == existing ? new CopyOnWriteArrayList<>() : existing;
+      result.add(subscription);
+      return result;
+    });
+    start();
+  }
+
+  public void unsubscribe(String path, Set<String> keys, ConfigChangeCallback callback) {
+    Subscription subscription = new Subscription(keys, callback);
+    this.subscriptions.computeIfPresent(path, (p, existing) -> {
+      existing.remove(subscription);
+      return existing.isEmpty() ? null : existing;
+    });
+  }
+
+  public void unsubscribeAll() {
+    this.subscriptions.clear();
+  }
+
+  synchronized void start() {
+    if (null != this.executorService) {
+      return;
+    }
+    this.executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "vault-subscription-poll");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.executorService.scheduleWithFixedDelay(this::poll, this.pollIntervalMs, this.pollIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  void poll() {
+    for (Map.Entry<String, List<Subscription>> e : this.subscriptions.entrySet()) {
+      final String path = e.getKey();
+      final long sequence = this.sequence.incrementAndGet();
+      final SecretCache.Entry entry;
+      try {
+        entry = this.loader.apply(path);
+      } catch (RuntimeException ex) {
+        log.warn("poll() - Exception thrown reading '{}'", path, ex);
+        continue;
+      }
+      for (Subscription subscription : e.getValue()) {
+        final Map<String, String> data;
+        try {
+          data = entry.project(subscription.keys);
+        } catch (RuntimeException ex) {
+          log.warn("poll() - Exception thrown reading the subscribed keys of '{}'", path, ex);
+          continue;
+        }
+        if (!subscription.update(sequence, fingerprint(data))) {
+          continue;
+        }
+        log.info("poll() - '{}' has changed. Notifying subscriber.", path);
+        try {
+          subscription.callback.onChange(path, new ConfigData(data, entry.ttl(this.time.milliseconds())));
+        } catch (RuntimeException ex) {
+          log.error("poll() - Exception thrown by callback for '{}'", path, ex);
+        }
+      }
+    }
+  }
+
+  static String fingerprint(Map<String, String> data) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (Map.Entry<String, String> e : new TreeMap<>(data).entrySet()) {
+      hasher.putString(e.getKey(), StandardCharsets.UTF_8);
+      hasher.putByte((byte) 0);
+      hasher.putBoolean(null == e.getValue());
+      if (null != e.getValue()) {
+        hasher.putString(e.getValue(), StandardCharsets.UTF_8);
+      }
+      hasher.putByte((byte) 0);
+    }
+    return hasher.hash().toString();
+  }
+
+  @Override
+  public synchronized void close() {
+    this.subscriptions.clear();
+    if (null != this.executorService) {
+      this.executorService.shutdownNow();
+    }
+  }
+
+  static class Subscription {
+    final Set<String> keys;
+    final ConfigChangeCallback callback;
+    private long sequence;
+    private String fingerprint;
+
+    Subscription(Set<String> keys, ConfigChangeCallback callback) {
+      this.keys = null == keys ? Collections.emptySet() : keys;
+      this.callback = callback;
+    }
+
+    /**
+     * Method is used to record the value of the subscribed keys.
+     *
+     * @param sequence    sequence number taken before the value was read.
+     * @param fingerprint fingerprint of the value, or null if it could not be read.
+     * @return true if the value has changed since it was last recorded. A value that was read
+     * before the recorded value is ignored.
+     */
+    synchronized boolean update(long sequence, String fingerprint) {
+      if (sequence < this.sequence) {
+        return false;
+      }
+      final String previous = this.fingerprint;
+      this.sequence = sequence;
+      this.fingerprint = fingerprint;
+      return null != previous && null != fingerprint && !previous.equals(fingerprint);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Subscription)) {
+        return false;
+      }
+      Subscription that = (Subscription) o;
+      return keys.equals(that.keys) && callback.equals(that.callback);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(keys, callback);
+    }
+  }
+}
@@ -0,0 +1,240 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import org.apache.kafka.common.utils.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the Vault token valid in the background. Renewable tokens are renewed once a fraction of
+ * their ttl has elapsed. If the token cannot be renewed the config provider authenticates again
+ * with its {@link AuthHandlers.AuthHandler}. Reads never wait on renewal or login.
+ * <p>
+ * A token that was configured with {@link VaultConfigProviderConfig#TOKEN_CONFIG} cannot be obtained
+ * again. It is renewed for as long as Vault allows, after which a single error is logged when it
+ * expires.
+ */
+class TokenRenewalScheduler implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(TokenRenewalScheduler.class);
+  private final Callable<AuthHandlers.AuthConfig> renew;
+  private final Callable<AuthHandlers.AuthConfig> login;
+  private final Consumer<String> tokenListener;
+  private final double ttlFraction;
+  private final double jitter;
+  private final long retryIntervalMs;
+  private final Executor executor;
+  private final ScheduledExecutorService executorService;
+  private final Time time;
+  private final AtomicLong renewed = new AtomicLong();
+  private final AtomicLong renewFailed = new AtomicLong();
+  private final AtomicLong loggedIn = new AtomicLong();
+  private final AtomicLong loginFailed = new AtomicLong();
+  private volatile long expiresMs = -1L;
+
+  /**
+   * @param renew           renews the current token.
+   * @param login           authenticates again and returns the new token. Null if the token cannot
+   *                        be obtained again.
+   * @param tokenListener   called with the new token after a login.
+   * @param ttlFraction     fraction of the ttl that must elapse before the token is renewed.
+   * @param jitter          fraction of the renewal delay that is randomly subtracted.
+   * @param retryIntervalMs number of milliseconds to wait before trying again after a failed login.
+   * @param executor        executor the renewals and logins are run on.
+   * @param time            time used to track the expiration of the token.
+   */
+  TokenRenewalScheduler(
+      Callable<AuthHandlers.AuthConfig> renew,
+      Callable<AuthHandlers.AuthConfig> login,
+      Consumer<String> tokenListener,
+      double ttlFraction,
+      double jitter,
+      long retryIntervalMs,
+      Executor executor,
+      Time time) {
+    this.renew = renew;
+    this.executor = executor;
+    this.login = login;
+    this.tokenListener = tokenListener;
+    this.ttlFraction = ttlFraction;
+    this.jitter = jitter;
+    this.retryIntervalMs = retryIntervalMs;
+    this.time = time;
+    this.executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "vault-token-renewal");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Method is used to schedule the next renewal of the token.
+   *
+   * @param authConfig result of the last authentication or renewal.
+   */
+  public void schedule(AuthHandlers.AuthConfig authConfig) {
+    this.expiresMs = authConfig.ttlMs > 0 ? this.time.milliseconds() + authConfig.ttlMs : -1L;
+    if (authConfig.ttlMs <= 0) {
+      log.debug("schedule() - Token does not expire. Renewal is not required.");
+      return;
+    }
+    if (!authConfig.isRenewable && null == this.login) {
+      log.warn("schedule() - Token cannot be renewed and expires in {} ms. Set {} to a new token before then.",
+          authConfig.ttlMs, VaultConfigProviderConfig.TOKEN_CONFIG);
+      scheduleExpiry();
+      return;
+    }
+    final long delay = delay(authConfig.ttlMs);
+    log.debug("schedule() - Scheduling renewal of token with ttl {} ms in {} ms.", authConfig.ttlMs, delay);
+    schedule(authConfig, delay);
+  }
+
+  void schedule(AuthHandlers.AuthConfig authConfig, long delay) {
+    if (this.executorService.isShutdown()) {
+      return;
+    }
+    this.executorService.schedule(() -> {
+      try {
+        this.executor.execute(() -> {
+          AuthHandlers.AuthConfig next = renew(authConfig);
+          if (null != next) {
+            schedule(next);
+          } else if (null != this.login || this.time.milliseconds() + this.retryIntervalMs < this.expiresMs) {
+            schedule(authConfig, this.retryIntervalMs);
+          } else {
+            scheduleExpiry();
+          }
+        });
+      } catch (RejectedExecutionException ex) {
+        log.trace("schedule() - Renewal was rejected", ex);
+      }
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Method is used to log an error once the current token has expired. Used when the token cannot
+   * be renewed or obtained again.
+   */
+  void scheduleExpiry() {
+    if (this.executorService.isShutdown()) {
+      return;
+    }
+    final long delay = Math.max(0L, this.expiresMs - this.time.milliseconds());
+    this.executorService.schedule(
+        () -> log.error("scheduleExpiry() - Vault token has expired. Reads will fail until {} is set to a new token.",
+            VaultConfigProviderConfig.TOKEN_CONFIG),
+        delay,
+        TimeUnit.MILLISECONDS
+    );
+  }
+
+  long delay(long ttlMs) {
+    final double delay = ttlMs * this.ttlFraction;
+    return (long) (delay - delay * this.jitter * ThreadLocalRandom.current().nextDouble());
+  }
+
+  /**
+   * Method is used to renew the token, or authenticate again if the token cannot be renewed.
+   *
+   * @param current result of the last authentication or renewal.
+   * @return the result of the renewal or login, or null if both failed. If the token cannot be
+   * obtained again, the result of the renewal is returned as not renewable once it is capped by
+   * the max ttl.
+   */
+  AuthHandlers.AuthConfig renew(AuthHandlers.AuthConfig current) {
+    if (current.isRenewable) {
+      try {
+        AuthHandlers.AuthConfig result = this.renew.call();
+        this.renewed.incrementAndGet();
+        log.debug("renew() - Renewed token. ttl = {} ms", result.ttlMs);
+        // Renewal can be capped by the max ttl of the token. Log in again before it can no longer be renewed.
+        if (result.ttlMs > 0 && result.ttlMs < current.ttlMs * this.ttlFraction) {
+          if (null == this.login) {
+            log.debug("renew() - Token is approaching its max ttl and cannot be renewed again.");
+            return new AuthHandlers.AuthConfig(result.token, false, result.ttlMs);
+          }
+          log.debug("renew() - Token is approaching its max ttl. Authenticating again.");
+          return login();
+        }
+        return result;
+      } catch (Exception ex) {
+        this.renewFailed.incrementAndGet();
+        if (null == this.login) {
+          log.warn("renew() - Exception thrown renewing token.", ex);
+          return null;
+        }
+        log.warn("renew() - Exception thrown renewing token. Authenticating again.", ex);
+      }
+    }
+    return null == this.login ? null : login();
+  }
+
+  AuthHandlers.AuthConfig login() {
+    try {
+      AuthHandlers.AuthConfig result = this.login.call();
+      if (null != result.token) {
+        this.tokenListener.accept(result.token);
+      }
+      this.loggedIn.incrementAndGet();
+      log.info("login() - Authenticated to Vault. ttl = {} ms", result.ttlMs);
+      return result;
+    } catch (Exception ex) {
+      this.loginFailed.incrementAndGet();
+      log.error("login() - Exception thrown authenticating to Vault. Retrying in {} ms.", this.retryIntervalMs, ex);
+      return null;
+    }
+  }
+
+  /**
+   * @return number of milliseconds until the current token expires, or -1 if it does not expire.
+   */
+  public long expiresInMs() {
+    final long expiresMs = this.expiresMs;
+    return expiresMs < 0 ? -1L : Math.max(0L, expiresMs - this.time.milliseconds());
+  }
+
+  public long renewed() {
+    return this.renewed.get();
+  }
+
+  public long renewFailed() {
+    return this.renewFailed.get();
+  }
+
+  public long loggedIn() {
+    return this.loggedIn.get();
+  }
+
+  public long loginFailed() {
+    return this.loginFailed.get();
+  }
+
+  @Override
+  public void close() {
+    this.executorService.shutdownNow();
+  }
+}
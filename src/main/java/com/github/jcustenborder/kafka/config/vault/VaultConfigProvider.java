@@ -17,14 +17,12 @@ package com.github.jcustenborder.kafka.config.vault;
 
 import com.bettercloud.vault.Vault;
 import com.bettercloud.vault.VaultConfig;
-import com.bettercloud.vault.VaultException;
-import com.bettercloud.vault.response.LogicalResponse;
 import com.github.jcustenborder.kafka.connect.utils.config.Description;
+import org.apache.kafka.common.config.ConfigChangeCallback;
 import org.apache.kafka.common.config.ConfigData;
 import org.apache.kafka.common.config.ConfigDef;
-import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.common.config.provider.ConfigProvider;
-import org.apache.kafka.connect.errors.ConnectException;
+import org.apache.kafka.common.utils.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,16 +30,26 @@ import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Description("This config provider is used to retrieve configuration settings from a Hashicorp vault instance. " +
     "Config providers are generic and can be used in any application that utilized the Kafka AbstractConfig class. ")
 public class VaultConfigProvider implements ConfigProvider {
   private static final Logger log = LoggerFactory.getLogger(VaultConfigProvider.class);
   VaultConfigProviderConfig config;
-  Vault vault;
-
+  VaultSession session;
+  /**
+   * Metrics of the lookups made through this config provider. These are the metrics of the session
+   * unless the session is shared.
+   */
+  VaultMetrics metrics;
+  SubscriptionManager subscriptionManager;
+  Time time = Time.SYSTEM;
+  static final long GET_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1L);
+  final AtomicLong nextGetLogNanos = new AtomicLong();
+  final AtomicLong suppressedGetLogs = new AtomicLong();
 
   @Override
   public ConfigData get(String path) {
@@ -50,63 +58,154 @@ public class VaultConfigProvider implements ConfigProvider {
 
   @Override
   public ConfigData get(String path, Set<String> keys) {
-    log.info("get() - path = '{}' keys = '{}'", path, keys);
+    logGet(path, keys);
+    final VaultSession session = this.session;
+    final VaultMetrics metrics = this.metrics;
+    final long started = this.time.nanoseconds();
     try {
-      LogicalResponse logicalResponse = this.vault.withRetries(this.config.maxRetries, this.config.retryInterval)
-          .logical()
-          .read(path);
-      if (logicalResponse.getRestResponse().getStatus() == 200) {
-        Predicate<Map.Entry<String, String>> filter = keys == null || keys.isEmpty() ?
-            entry -> true : entry -> keys.contains(entry.getKey());
-        Map<String, String> result = logicalResponse.getData()
-            .entrySet()
-            .stream()
-            .filter(filter)
-            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-
-        Long ttl = logicalResponse.getLeaseDuration();
-        if (ttl == null || ttl <= 0) {
-          ttl = config.minimumSecretTTL;
-        }
-        return new ConfigData(result, ttl);
-      } else {
-        throw new ConfigException(
-            String.format("Vault path '%s' was not found", path)
+      SecretCache.Entry entry = session.cachedEntry(path, metrics);
+      if (null == entry) {
+        entry = SingleFlight.join(session.lookupAsync(path, keys));
+      }
+      return configData(entry, keys);
+    } finally {
+      metrics.recordGet(path, TimeUnit.NANOSECONDS.toMillis(this.time.nanoseconds() - started));
+    }
+  }
+
+  /**
+   * Method is used to retrieve the data stored at a path without blocking the calling thread.
+   *
+   * @param path path to read.
+   * @return future that is completed with the data.
+   */
+  public CompletableFuture<ConfigData> getAsync(String path) {
+    return getAsync(path, Collections.emptySet());
+  }
+
+  /**
+   * Method is used to retrieve the data stored at a path without blocking the calling thread.
+   *
+   * @param path path to read.
+   * @param keys keys to return. All keys are returned if this is null or empty.
+   * @return future that is completed with the data, or a ConfigException if the path could not be read.
+   */
+  public CompletableFuture<ConfigData> getAsync(String path, Set<String> keys) {
+    logGet(path, keys);
+    final VaultSession session = this.session;
+    final VaultMetrics metrics = this.metrics;
+    final long started = this.time.nanoseconds();
+    SecretCache.Entry entry = session.cachedEntry(path, metrics);
+    if (null != entry) {
+      metrics.recordGet(path, TimeUnit.NANOSECONDS.toMillis(this.time.nanoseconds() - started));
+      return CompletableFuture.completedFuture(configData(entry, keys));
+    }
+    return session.lookupAsync(path, keys).whenComplete((e, ex) -> metrics.recordGet(
+        path,
+        TimeUnit.NANOSECONDS.toMillis(this.time.nanoseconds() - started)
+    )).thenApply(e -> configData(e, keys));
+  }
+
+  /**
+   * Method is used to build the result of a lookup. The data is projected to the requested keys
+   * with {@link SecretCache.Entry#project(Set)}. A pinned version of a secret can not change so
+   * it is returned without a ttl and Kafka will not reload it. A stale entry is returned with at
+   * most the minimum ttl so the value is requested again soon after Vault recovers.
+   */
+  ConfigData configData(SecretCache.Entry entry, Set<String> keys) {
+    Long ttl = null;
+    if (!entry.isImmutable()) {
+      ttl = entry.ttl(this.time.milliseconds());
+      if (entry.stale) {
+        ttl = Math.min(ttl, this.session.config.minimumSecretTTL);
+      }
+    }
+    return new ConfigData(entry.project(keys), ttl);
+  }
+
+  /**
+   * Kafka resolves every config of every connector and task through get(), so the lookups are
+   * logged at trace. At debug a single lookup is logged per interval along with the number of
+   * lookups that were not logged.
+   */
+  void logGet(String path, Set<String> keys) {
+    if (log.isTraceEnabled()) {
+      log.trace("get() - path = '{}' keys = '{}'", path, keys);
+    } else if (log.isDebugEnabled()) {
+      final long now = this.time.nanoseconds();
+      final long next = this.nextGetLogNanos.get();
+      if ((0L == next || now - next >= 0L) && this.nextGetLogNanos.compareAndSet(next, now + GET_LOG_INTERVAL_NANOS)) {
+        log.debug(
+            "get() - path = '{}' keys = '{}'. {} lookup(s) were not logged.",
+            path,
+            keys,
+            this.suppressedGetLogs.getAndSet(0L)
         );
+      } else {
+        this.suppressedGetLogs.incrementAndGet();
       }
-    } catch (VaultException e) {
-      ConfigException configException = new ConfigException(
-          String.format("Exception thrown reading from '%s'", path)
-      );
-      configException.initCause(e);
-      throw configException;
     }
   }
 
+  @Override
+  public void subscribe(String path, Set<String> keys, ConfigChangeCallback callback) {
+    log.debug("subscribe() - path = '{}' keys = '{}'", path, keys);
+    this.subscriptionManager.subscribe(path, keys, callback);
+  }
+
+  @Override
+  public void unsubscribe(String path, Set<String> keys, ConfigChangeCallback callback) {
+    log.debug("unsubscribe() - path = '{}' keys = '{}'", path, keys);
+    this.subscriptionManager.unsubscribe(path, keys, callback);
+  }
 
   @Override
-  public void close() throws IOException {
+  public void unsubscribeAll() {
+    this.subscriptionManager.unsubscribeAll();
+  }
 
+  @Override
+  public void close() throws IOException {
+    if (null != this.subscriptionManager) {
+      this.subscriptionManager.close();
+    }
+    if (null != this.session) {
+      if (this.config.sessionSharedEnabled) {
+        this.metrics.close();
+        VaultSessions.release(this.session);
+      } else {
+        this.session.close();
+      }
+      this.session = null;
+    }
   }
 
   @Override
   public void configure(Map<String, ?> settings) {
     this.config = new VaultConfigProviderConfig(settings);
 
-    VaultConfig config = this.config.createConfig();
-    this.vault = new Vault(config);
-
-    AuthHandlers.AuthHandler authHandler = AuthHandlers.getHandler(this.config.loginBy);
-    AuthHandlers.AuthConfig authConfig;
-    try {
-      authConfig = authHandler.auth(this.config, this.vault);
-    } catch (VaultException ex) {
-      throw new ConnectException(
-          "Exception while authenticating to Vault",
-          ex
-      );
+    if (this.config.sessionSharedEnabled) {
+      this.session = VaultSessions.acquire(this.config, this::createVault, this.time);
+    } else {
+      VaultSession session = new VaultSession(this.config, this::createVault, this.time);
+      try {
+        session.open();
+      } catch (RuntimeException ex) {
+        session.close();
+        throw ex;
+      }
+      this.session = session;
     }
-    log.trace("authConfig = {}", authConfig);
+    this.metrics = this.config.sessionSharedEnabled ? new VaultMetrics(this.time) : this.session.metrics;
+    this.subscriptionManager = new SubscriptionManager(
+        path -> this.session.entry(path, true),
+        this.config.subscriptionPollIntervalMs,
+        this.time
+    );
+  }
+
+  Vault createVault(VaultConfig config) {
+    return new Vault(config);
   }
 
   public static ConfigDef config() {
@@ -22,19 +22,42 @@ import com.bettercloud.vault.VaultException;
 import com.github.jcustenborder.kafka.connect.utils.config.ConfigKeyBuilder;
 import com.github.jcustenborder.kafka.connect.utils.config.ConfigUtils;
 import com.github.jcustenborder.kafka.connect.utils.config.Description;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Strings;
+import com.google.common.primitives.Ints;
 import org.apache.kafka.common.config.AbstractConfig;
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.common.config.ConfigException;
 import org.apache.kafka.common.config.types.Password;
-import com.google.common.base.Strings;
 
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 class VaultConfigProviderConfig extends AbstractConfig {
   public static final String MAX_RETRIES_CONFIG = "vault.max.retries";
-  static final String MAX_RETRIES_DOC = "The number of times that API operations will be retried when a failure occurs.";
+  static final String MAX_RETRIES_DOC = "The number of times that API operations will be retried when a failure occurs. " +
+      "Only connection failures, `429` and `5xx` responses are retried.";
+  public static final String RETRY_BACKOFF_INITIAL_MS_CONFIG = "vault.retry.backoff.initial.ms";
+  static final String RETRY_BACKOFF_INITIAL_MS_DOC = "The maximum number of milliseconds to wait before the first retry " +
+      "of a read. The maximum doubles with every retry and the actual delay is chosen at random between zero and " +
+      "the maximum so that clients do not retry in lockstep.";
   public static final String MAX_RETRY_INTERVAL_CONFIG = "vault.retry.interval.ms";
-  static final String MAX_RETRY_INTERVAL_DOC = "The number of milliseconds that the driver will wait in between retries.";
+  static final String MAX_RETRY_INTERVAL_DOC = "The number of milliseconds to wait before retrying a background refresh " +
+      "of a secret or a failed login. Reads are retried with an exponential backoff instead. If this is set and `" +
+      RETRY_BACKOFF_INITIAL_MS_CONFIG + "` is not, it is also used as the initial backoff of a read.";
+  public static final String RETRY_BACKOFF_MAX_MS_CONFIG = "vault.retry.backoff.max.ms";
+  static final String RETRY_BACKOFF_MAX_MS_DOC = "The upper bound in milliseconds of the delay between retries of a read.";
+  public static final String RETRY_MAX_ELAPSED_MS_CONFIG = "vault.retry.max.elapsed.ms";
+  static final String RETRY_MAX_ELAPSED_MS_DOC = "The maximum number of milliseconds a read will be retried for. A read " +
+      "is not retried if the retry would start after this time has passed.";
+  public static final String RETRY_BUDGET_CAPACITY_CONFIG = "vault.retry.budget.capacity";
+  static final String RETRY_BUDGET_CAPACITY_DOC = "The maximum number of retries that can be made in a burst. The budget " +
+      "is shared by the config providers that share a session, and every retry uses one from the budget. Once the " +
+      "budget is exhausted failures are returned without being retried. `0` disables retries.";
+  public static final String RETRY_BUDGET_REFILL_PER_SECOND_CONFIG = "vault.retry.budget.refill.per.second";
+  static final String RETRY_BUDGET_REFILL_PER_SECOND_DOC = "The number of retries that are added back to the retry " +
+      "budget every second.";
   public static final String ADDRESS_CONFIG = "vault.address";
   static final String ADDRESS_DOC = "Sets the address (URL) of the Vault server instance to which API calls should be sent. " +
       "If no address is explicitly set, the object will look to the `VAULT_ADDR` If you do not supply it explicitly AND no " +
@@ -53,6 +76,23 @@ class VaultConfigProviderConfig extends AbstractConfig {
   public static final String LOGIN_BY_CONFIG = "vault.login.by";
   static final String LOGIN_BY_DOC = "The login method to use. " + ConfigUtils.enumDescription(VaultLoginBy.class);
 
+  public static final String APPROLE_PATH_CONFIG = "vault.auth.approle.path";
+  static final String APPROLE_PATH_DOC = "The path the AppRole auth method is mounted at. Used when `" + LOGIN_BY_CONFIG +
+      "` is `AppRole`.";
+  public static final String APPROLE_ROLE_ID_CONFIG = "vault.auth.approle.role.id";
+  static final String APPROLE_ROLE_ID_DOC = "The role id used to log in with the AppRole auth method.";
+  public static final String APPROLE_SECRET_ID_CONFIG = "vault.auth.approle.secret.id";
+  static final String APPROLE_SECRET_ID_DOC = "The secret id used to log in with the AppRole auth method.";
+
+  public static final String KUBERNETES_PATH_CONFIG = "vault.auth.kubernetes.path";
+  static final String KUBERNETES_PATH_DOC = "The path the Kubernetes auth method is mounted at. Used when `" +
+      LOGIN_BY_CONFIG + "` is `Kubernetes`.";
+  public static final String KUBERNETES_ROLE_CONFIG = "vault.auth.kubernetes.role";
+  static final String KUBERNETES_ROLE_DOC = "The role used to log in with the Kubernetes auth method.";
+  public static final String KUBERNETES_JWT_PATH_CONFIG = "vault.auth.kubernetes.jwt.path";
+  static final String KUBERNETES_JWT_PATH_DOC = "The file containing the service account token used to log in with " +
+      "the Kubernetes auth method. The file is read on every login so rotated tokens are picked up.";
+
   public static final String MIN_TTL_MS_CONFIG = "vault.secret.minimum.ttl.ms";
   static final String MIN_TTL_MS_DOC = "The minimum amount of time that a secret should be used. " +
       "If a secret does not have a TTL associated with it, this setting allows you to override how often " +
@@ -62,19 +102,263 @@ class VaultConfigProviderConfig extends AbstractConfig {
   static final String SSL_VERIFY_ENABLED_DOC = "Flag to determine if the configProvider should verify the SSL Certificate " +
       "of the Vault server. Outside of development this should never be enabled.";
 
+  public static final String CACHE_ENABLED_CONFIG = "vault.cache.enabled";
+  static final String CACHE_ENABLED_DOC = "Flag to determine if the data read from Vault should be cached in memory until " +
+      "the ttl of the secret expires. This prevents the same path from being read from Vault over and over when many " +
+      "connectors are started at the same time.";
+  public static final String CACHE_MAX_ENTRIES_CONFIG = "vault.cache.max.entries";
+  static final String CACHE_MAX_ENTRIES_DOC = "The maximum number of paths that will be held in the cache. When the cache " +
+      "is full the least recently used entries will be evicted.";
+  public static final String NEGATIVE_CACHE_TTL_MS_CONFIG = "vault.negative.cache.ttl.ms";
+  static final String NEGATIVE_CACHE_TTL_MS_DOC = "The number of milliseconds a path that was not found or that the " +
+      "token is not allowed to read is remembered. Lookups of the path during this time fail without calling Vault, " +
+      "so a typo in a connector configuration does not send a request to Vault on every restart. The path is " +
+      "forgotten as soon as it is read successfully. `0` disables negative caching.";
+  public static final String NEGATIVE_CACHE_MAX_ENTRIES_CONFIG = "vault.negative.cache.max.entries";
+  static final String NEGATIVE_CACHE_MAX_ENTRIES_DOC = "The maximum number of paths that were not found or denied " +
+      "that will be remembered.";
+
+  public static final String REFRESH_AHEAD_ENABLED_CONFIG = "vault.refresh.ahead.enabled";
+  static final String REFRESH_AHEAD_ENABLED_DOC = "Flag to determine if cached secrets should be re-read from Vault in the " +
+      "background before their ttl expires. This requires `" + CACHE_ENABLED_CONFIG + "` to be enabled.";
+  public static final String REFRESH_AHEAD_TTL_FRACTION_CONFIG = "vault.refresh.ahead.ttl.fraction";
+  static final String REFRESH_AHEAD_TTL_FRACTION_DOC = "The fraction of the ttl of a secret that must elapse before it is " +
+      "refreshed in the background. For example `0.75` will refresh a secret with a ttl of 60 seconds after 45 seconds.";
+  public static final String REFRESH_AHEAD_MAX_STALE_MS_CONFIG = "vault.refresh.ahead.max.stale.ms";
+  static final String REFRESH_AHEAD_MAX_STALE_MS_DOC = "The number of milliseconds past its expiration that the last known " +
+      "value of a secret will be served if it could not be refreshed from Vault.";
+
+  public static final String SUBSCRIPTION_POLL_INTERVAL_MS_CONFIG = "vault.subscription.poll.interval.ms";
+  static final String SUBSCRIPTION_POLL_INTERVAL_MS_DOC = "The number of milliseconds between checks of subscribed paths " +
+      "for changes. Subscribers are only notified when the value of one of the keys they subscribed to has changed.";
+
+  public static final String KV_VERSION_CONFIG = "vault.kv.version";
+  static final String KV_VERSION_DOC = "The version of the KV secrets engine used for paths that do not match a mount in `" +
+      "vault.kv.mounts`.";
+  public static final String KV_MOUNTS_CONFIG = "vault.kv.mounts";
+  static final String KV_MOUNTS_DOC = "List of KV secrets engine mounts and their version in the format `mount:version`. " +
+      "For example `secret:2,legacy:1`. Paths are matched against the longest mount they start with. Setting the " +
+      "version explicitly allows KV version 1 and KV version 2 mounts to be used side by side.";
+
+  public static final String KV_VERSION_CHECK_ENABLED_CONFIG = "vault.kv.v2.version.check.enabled";
+  static final String KV_VERSION_CHECK_ENABLED_DOC = "Flag to determine if expired secrets stored in a KV version 2 engine " +
+      "should be revalidated against the `metadata` endpoint before they are read again. The secret data is only read " +
+      "when `current_version` has changed. The token must be allowed to read the `metadata` path of the secret.";
+
+  public static final String SNAPSHOT_PATH_CONFIG = "vault.snapshot.path";
+  static final String SNAPSHOT_PATH_DOC = "Path of a local file the cached secrets are written to. The file is encrypted " +
+      "and loaded when the config provider starts so secrets can be served before Vault has responded. Secrets " +
+      "restored from the file are revalidated against Vault in the background. The file is only restored if it was " +
+      "written with the same settings and credentials. Requires `" + CACHE_ENABLED_CONFIG + "`. Leave empty to disable.";
+  public static final String SNAPSHOT_PASSWORD_CONFIG = "vault.snapshot.password";
+  static final String SNAPSHOT_PASSWORD_DOC = "The password used to derive the key that encrypts the snapshot file. " +
+      "Required if `" + SNAPSHOT_PATH_CONFIG + "` is set.";
+  public static final String SNAPSHOT_MAX_AGE_MS_CONFIG = "vault.snapshot.max.age.ms";
+  static final String SNAPSHOT_MAX_AGE_MS_DOC = "The maximum age in milliseconds of a secret in the snapshot file. Older " +
+      "secrets are not restored and are read from Vault.";
+  public static final String SNAPSHOT_WRITE_INTERVAL_MS_CONFIG = "vault.snapshot.write.interval.ms";
+  static final String SNAPSHOT_WRITE_INTERVAL_MS_DOC = "The number of milliseconds between writes of the snapshot file. " +
+      "The file is only written if secrets have been read from Vault since the last write.";
+
+  public static final String TOKEN_RENEWAL_ENABLED_CONFIG = "vault.token.renewal.enabled";
+  static final String TOKEN_RENEWAL_ENABLED_DOC = "Flag to determine if the Vault token should be renewed in the " +
+      "background before it expires. If the token cannot be renewed the config provider authenticates again. A token " +
+      "set with `" + TOKEN_CONFIG + "` cannot be obtained again, so an error is logged once it expires.";
+  public static final String TOKEN_RENEWAL_TTL_FRACTION_CONFIG = "vault.token.renewal.ttl.fraction";
+  static final String TOKEN_RENEWAL_TTL_FRACTION_DOC = "The fraction of the ttl of the token that must elapse before it " +
+      "is renewed.";
+  public static final String TOKEN_RENEWAL_JITTER_CONFIG = "vault.token.renewal.jitter";
+  static final String TOKEN_RENEWAL_JITTER_DOC = "The maximum fraction of the renewal delay that is randomly subtracted. " +
+      "This spreads renewals of many config providers that started at the same time.";
+
+  public static final String SESSION_SHARED_ENABLED_CONFIG = "vault.session.shared.enabled";
+  static final String SESSION_SHARED_ENABLED_DOC = "Flag to determine if config providers in the same JVM with identical " +
+      "settings should share their Vault client, token and secret cache. Kafka creates a config provider for every " +
+      "client, so sharing reduces the number of logins and the memory used by dense workers.";
+
+  public static final String HTTP_TRANSPORT_CONFIG = "vault.http.transport";
+  static final String HTTP_TRANSPORT_DOC = "The transport used to read secrets. `Pooled` is opt in. " +
+      ConfigUtils.enumDescription(HttpTransportType.class);
+  public static final String HTTP_POOL_SIZE_CONFIG = "vault.http.pool.size";
+  static final String HTTP_POOL_SIZE_DOC = "The maximum number of concurrent requests to Vault when `" +
+      HTTP_TRANSPORT_CONFIG + "` is `Pooled`. The number of idle connections kept alive by the JVM is set with the " +
+      "`http.maxConnections` system property.";
+  public static final String HTTP_CONNECT_TIMEOUT_MS_CONFIG = "vault.http.connect.timeout.ms";
+  static final String HTTP_CONNECT_TIMEOUT_MS_DOC = "The number of milliseconds to wait for a connection to Vault when `" +
+      HTTP_TRANSPORT_CONFIG + "` is `Pooled`.";
+  public static final String HTTP_READ_TIMEOUT_MS_CONFIG = "vault.http.read.timeout.ms";
+  static final String HTTP_READ_TIMEOUT_MS_DOC = "The number of milliseconds to wait for a response from Vault when `" +
+      HTTP_TRANSPORT_CONFIG + "` is `Pooled`.";
+
+  public static final String VIRTUAL_THREADS_ENABLED_CONFIG = "vault.executor.virtual.threads.enabled";
+  static final String VIRTUAL_THREADS_ENABLED_DOC = "Flag to determine if Vault reads, background refreshes and token " +
+      "renewals should run on virtual threads. Requires Java 21 or later. On older JVMs a pool of `" +
+      HTTP_POOL_SIZE_CONFIG + "` platform threads is used. The number of concurrent requests is still limited by `" +
+      HTTP_POOL_SIZE_CONFIG + "` when `" + HTTP_TRANSPORT_CONFIG + "` is `Pooled`.";
+
+  public static final String RATE_LIMIT_REQUESTS_PER_SECOND_CONFIG = "vault.rate.limit.requests.per.second";
+  static final String RATE_LIMIT_REQUESTS_PER_SECOND_DOC = "The maximum number of requests per second that are sent to " +
+      "Vault by the config providers in the JVM with the same configuration. Requests over the limit wait in the " +
+      "order they were made rather than failing. Set this below the rate limit quota of the namespace so bursts, such " +
+      "as during a rebalance, do not receive `429` responses. `0` disables the limit.";
+  public static final String CIRCUIT_BREAKER_FAILURE_THRESHOLD_CONFIG = "vault.circuit.breaker.failure.threshold";
+  static final String CIRCUIT_BREAKER_FAILURE_THRESHOLD_DOC = "The number of consecutive failed requests that open " +
+      "the circuit breaker. A request that is retried counts as one failure once the retries are exhausted.";
+  public static final String CIRCUIT_BREAKER_ENABLED_CONFIG = "vault.circuit.breaker.enabled";
+  static final String CIRCUIT_BREAKER_ENABLED_DOC = "Flag to determine if requests to Vault should fail fast once " +
+      "Vault is unavailable. The circuit breaker opens after `" + CIRCUIT_BREAKER_FAILURE_THRESHOLD_CONFIG +
+      "` consecutive connection failures, `429` or `5xx` responses.";
+  public static final String CIRCUIT_BREAKER_OPEN_MS_CONFIG = "vault.circuit.breaker.open.ms";
+  static final String CIRCUIT_BREAKER_OPEN_MS_DOC = "The number of milliseconds the circuit breaker stays open before " +
+      "a single request is sent to check if Vault has recovered.";
+  public static final String STALE_IF_ERROR_MS_CONFIG = "vault.stale.if.error.ms";
+  static final String STALE_IF_ERROR_MS_DOC = "The number of milliseconds after a cached secret expires that it will " +
+      "still be returned if Vault is unavailable. `0` disables serving stale secrets. Requires `" +
+      CACHE_ENABLED_CONFIG + "`.";
+
+  public static final String DIRECTORY_MAX_PATHS_CONFIG = "vault.directory.max.paths";
+  static final String DIRECTORY_MAX_PATHS_DOC = "The maximum number of secrets that can be read by a directory lookup " +
+      "such as `secret/connectors/*`. A lookup of a folder with more secrets fails. At most `" + HTTP_POOL_SIZE_CONFIG +
+      "` of the secrets are read from Vault at the same time.";
+
+  public static final String PREFETCH_PATHS_CONFIG = "vault.prefetch.paths";
+  static final String PREFETCH_PATHS_DOC = "Paths that should be read in parallel when the config provider is " +
+      "configured. This fills the cache before the first lookup so that a connector with many secrets does not " +
+      "read them from Vault one at a time. Requires `" + CACHE_ENABLED_CONFIG + "`.";
+  public static final String PREFETCH_LIST_PATHS_CONFIG = "vault.prefetch.list.paths";
+  static final String PREFETCH_LIST_PATHS_DOC = "Folders that are listed when the config provider is configured. " +
+      "Every secret found under the folder and its sub folders is prefetched. The token must have the `list` " +
+      "capability on the folders.";
+  public static final String PREFETCH_MAX_PATHS_CONFIG = "vault.prefetch.max.paths";
+  static final String PREFETCH_MAX_PATHS_DOC = "The maximum number of paths that will be prefetched.";
+  public static final String PREFETCH_TIMEOUT_MS_CONFIG = "vault.prefetch.timeout.ms";
+  static final String PREFETCH_TIMEOUT_MS_DOC = "The number of milliseconds to wait for prefetching to complete. " +
+      "Reads that have not completed continue in the background.";
+
   public final int maxRetries;
   public final int retryInterval;
+  public final long retryBackoffInitialMs;
+  public final long retryBackoffMaxMs;
+  public final long retryMaxElapsedMs;
+  public final double retryBudgetCapacity;
+  public final double retryBudgetRefillPerSecond;
   public final boolean sslVerifyEnabled;
   public final VaultLoginBy loginBy;
   public final long minimumSecretTTL;
+  public final String appRolePath;
+  public final String appRoleRoleId;
+  public final Password appRoleSecretId;
+  public final String kubernetesPath;
+  public final String kubernetesRole;
+  public final String kubernetesJwtPath;
+  public final String prefix;
+  public final String namespace;
+  public final boolean cacheEnabled;
+  public final long cacheMaxEntries;
+  public final boolean refreshAheadEnabled;
+  public final double refreshAheadTTLFraction;
+  public final long refreshAheadMaxStaleMs;
+  public final long subscriptionPollIntervalMs;
+  public final boolean kvVersionCheckEnabled;
+  public final int kvVersion;
+  public final Map<String, Integer> kvMounts;
+  public final boolean tokenRenewalEnabled;
+  public final double tokenRenewalTTLFraction;
+  public final double tokenRenewalJitter;
+  public final boolean sessionSharedEnabled;
+  public final HttpTransportType httpTransport;
+  public final int httpPoolSize;
+  public final int httpConnectTimeoutMs;
+  public final int httpReadTimeoutMs;
+  public final boolean virtualThreadsEnabled;
+  public final double rateLimitRequestsPerSecond;
+  public final boolean circuitBreakerEnabled;
+  public final int circuitBreakerFailureThreshold;
+  public final long circuitBreakerOpenMs;
+  public final long staleIfErrorMs;
+  public final long negativeCacheTTLMs;
+  public final long negativeCacheMaxEntries;
+  public final int directoryMaxPaths;
+  public final List<String> prefetchPaths;
+  public final List<String> prefetchListPaths;
+  public final int prefetchMaxPaths;
+  public final long prefetchTimeoutMs;
+  public final String snapshotPath;
+  public final Password snapshotPassword;
+  public final long snapshotMaxAgeMs;
+  public final long snapshotWriteIntervalMs;
 
   public VaultConfigProviderConfig(Map<String, ?> settings) {
     super(config(), settings);
     this.maxRetries = getInt(MAX_RETRIES_CONFIG);
     this.retryInterval = getInt(MAX_RETRY_INTERVAL_CONFIG);
+    // vault.retry.interval.ms used to set the delay between retries of a read.
+    final boolean retryIntervalOnly = originals().containsKey(MAX_RETRY_INTERVAL_CONFIG) &&
+        !originals().containsKey(RETRY_BACKOFF_INITIAL_MS_CONFIG);
+    this.retryBackoffInitialMs = retryIntervalOnly ? this.retryInterval : getLong(RETRY_BACKOFF_INITIAL_MS_CONFIG);
+    this.retryBackoffMaxMs = getLong(RETRY_BACKOFF_MAX_MS_CONFIG);
+    this.retryMaxElapsedMs = getLong(RETRY_MAX_ELAPSED_MS_CONFIG);
+    this.retryBudgetCapacity = getDouble(RETRY_BUDGET_CAPACITY_CONFIG);
+    this.retryBudgetRefillPerSecond = getDouble(RETRY_BUDGET_REFILL_PER_SECOND_CONFIG);
     this.sslVerifyEnabled = getBoolean(SSL_VERIFY_ENABLED_CONFIG);
     this.loginBy = ConfigUtils.getEnum(VaultLoginBy.class, this, LOGIN_BY_CONFIG);
     this.minimumSecretTTL = getLong(MIN_TTL_MS_CONFIG);
+    this.appRolePath = getString(APPROLE_PATH_CONFIG);
+    this.appRoleRoleId = getString(APPROLE_ROLE_ID_CONFIG);
+    this.appRoleSecretId = getPassword(APPROLE_SECRET_ID_CONFIG);
+    this.kubernetesPath = getString(KUBERNETES_PATH_CONFIG);
+    this.kubernetesRole = getString(KUBERNETES_ROLE_CONFIG);
+    this.kubernetesJwtPath = getString(KUBERNETES_JWT_PATH_CONFIG);
+    if (VaultLoginBy.AppRole == this.loginBy) {
+      required(APPROLE_ROLE_ID_CONFIG, this.appRoleRoleId);
+      required(APPROLE_SECRET_ID_CONFIG, this.appRoleSecretId.value());
+    } else if (VaultLoginBy.Kubernetes == this.loginBy) {
+      required(KUBERNETES_ROLE_CONFIG, this.kubernetesRole);
+    }
+    this.prefix = getString(PREFIX_CONFIG);
+    this.namespace = getString(NAMESPACE_CONFIG);
+    this.cacheEnabled = getBoolean(CACHE_ENABLED_CONFIG);
+    this.cacheMaxEntries = getLong(CACHE_MAX_ENTRIES_CONFIG);
+    this.refreshAheadEnabled = getBoolean(REFRESH_AHEAD_ENABLED_CONFIG);
+    this.refreshAheadTTLFraction = getDouble(REFRESH_AHEAD_TTL_FRACTION_CONFIG);
+    this.refreshAheadMaxStaleMs = getLong(REFRESH_AHEAD_MAX_STALE_MS_CONFIG);
+    this.subscriptionPollIntervalMs = getLong(SUBSCRIPTION_POLL_INTERVAL_MS_CONFIG);
+    this.kvVersionCheckEnabled = getBoolean(KV_VERSION_CHECK_ENABLED_CONFIG);
+    this.kvVersion = getInt(KV_VERSION_CONFIG);
+    this.kvMounts = kvMounts(getList(KV_MOUNTS_CONFIG));
+    this.tokenRenewalEnabled = getBoolean(TOKEN_RENEWAL_ENABLED_CONFIG);
+    this.tokenRenewalTTLFraction = getDouble(TOKEN_RENEWAL_TTL_FRACTION_CONFIG);
+    this.tokenRenewalJitter = getDouble(TOKEN_RENEWAL_JITTER_CONFIG);
+    this.sessionSharedEnabled = getBoolean(SESSION_SHARED_ENABLED_CONFIG);
+    this.httpTransport = ConfigUtils.getEnum(HttpTransportType.class, this, HTTP_TRANSPORT_CONFIG);
+    this.httpPoolSize = getInt(HTTP_POOL_SIZE_CONFIG);
+    this.httpConnectTimeoutMs = getInt(HTTP_CONNECT_TIMEOUT_MS_CONFIG);
+    this.httpReadTimeoutMs = getInt(HTTP_READ_TIMEOUT_MS_CONFIG);
+    this.virtualThreadsEnabled = getBoolean(VIRTUAL_THREADS_ENABLED_CONFIG);
+    this.rateLimitRequestsPerSecond = getDouble(RATE_LIMIT_REQUESTS_PER_SECOND_CONFIG);
+    this.circuitBreakerEnabled = getBoolean(CIRCUIT_BREAKER_ENABLED_CONFIG);
+    this.circuitBreakerFailureThreshold = getInt(CIRCUIT_BREAKER_FAILURE_THRESHOLD_CONFIG);
+    this.circuitBreakerOpenMs = getLong(CIRCUIT_BREAKER_OPEN_MS_CONFIG);
+    this.staleIfErrorMs = getLong(STALE_IF_ERROR_MS_CONFIG);
+    this.negativeCacheTTLMs = getLong(NEGATIVE_CACHE_TTL_MS_CONFIG);
+    this.negativeCacheMaxEntries = getLong(NEGATIVE_CACHE_MAX_ENTRIES_CONFIG);
+    this.directoryMaxPaths = getInt(DIRECTORY_MAX_PATHS_CONFIG);
+    this.prefetchPaths = getList(PREFETCH_PATHS_CONFIG);
+    this.prefetchListPaths = getList(PREFETCH_LIST_PATHS_CONFIG);
+    this.prefetchMaxPaths = getInt(PREFETCH_MAX_PATHS_CONFIG);
+    this.prefetchTimeoutMs = getLong(PREFETCH_TIMEOUT_MS_CONFIG);
+    this.snapshotPath = getString(SNAPSHOT_PATH_CONFIG);
+    this.snapshotPassword = getPassword(SNAPSHOT_PASSWORD_CONFIG);
+    this.snapshotMaxAgeMs = getLong(SNAPSHOT_MAX_AGE_MS_CONFIG);
+    this.snapshotWriteIntervalMs = getLong(SNAPSHOT_WRITE_INTERVAL_MS_CONFIG);
+    if (!Strings.isNullOrEmpty(this.snapshotPath) &&
+        (null == this.snapshotPassword || Strings.isNullOrEmpty(this.snapshotPassword.value()))) {
+      throw new ConfigException(
+          SNAPSHOT_PASSWORD_CONFIG,
+          "[hidden]",
+          String.format("Value must be set when '%s' is set.", SNAPSHOT_PATH_CONFIG)
+      );
+    }
   }
 
   public static ConfigDef config() {
@@ -101,6 +385,48 @@ class VaultConfigProviderConfig extends AbstractConfig {
                 .defaultValue("")
                 .build()
         )
+        .define(
+            ConfigKeyBuilder.of(APPROLE_PATH_CONFIG, ConfigDef.Type.STRING)
+                .documentation(APPROLE_PATH_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue("approle")
+                .build()
+        )
+        .define(
+            ConfigKeyBuilder.of(APPROLE_ROLE_ID_CONFIG, ConfigDef.Type.STRING)
+                .documentation(APPROLE_ROLE_ID_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue("")
+                .build()
+        )
+        .define(
+            ConfigKeyBuilder.of(APPROLE_SECRET_ID_CONFIG, ConfigDef.Type.PASSWORD)
+                .documentation(APPROLE_SECRET_ID_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue("")
+                .build()
+        )
+        .define(
+            ConfigKeyBuilder.of(KUBERNETES_PATH_CONFIG, ConfigDef.Type.STRING)
+                .documentation(KUBERNETES_PATH_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue("kubernetes")
+                .build()
+        )
+        .define(
+            ConfigKeyBuilder.of(KUBERNETES_ROLE_CONFIG, ConfigDef.Type.STRING)
+                .documentation(KUBERNETES_ROLE_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue("")
+                .build()
+        )
+        .define(
+            ConfigKeyBuilder.of(KUBERNETES_JWT_PATH_CONFIG, ConfigDef.Type.STRING)
+                .documentation(KUBERNETES_JWT_PATH_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue("/var/run/secrets/kubernetes.io/serviceaccount/token")
+                .build()
+        )
         .define(
             ConfigKeyBuilder.of(NAMESPACE_CONFIG, ConfigDef.Type.STRING)
                 .documentation(NAMESPACE_DOC)
@@ -127,6 +453,41 @@ class VaultConfigProviderConfig extends AbstractConfig {
                 .importance(ConfigDef.Importance.LOW)
                 .defaultValue(2000)
                 .build()
+        ).define(
+            ConfigKeyBuilder.of(RETRY_BACKOFF_INITIAL_MS_CONFIG, ConfigDef.Type.LONG)
+                .documentation(RETRY_BACKOFF_INITIAL_MS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(100L)
+                .validator(ConfigDef.Range.atLeast(1))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(RETRY_BACKOFF_MAX_MS_CONFIG, ConfigDef.Type.LONG)
+                .documentation(RETRY_BACKOFF_MAX_MS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(5000L)
+                .validator(ConfigDef.Range.atLeast(1))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(RETRY_MAX_ELAPSED_MS_CONFIG, ConfigDef.Type.LONG)
+                .documentation(RETRY_MAX_ELAPSED_MS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(10000L)
+                .validator(ConfigDef.Range.atLeast(0))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(RETRY_BUDGET_CAPACITY_CONFIG, ConfigDef.Type.DOUBLE)
+                .documentation(RETRY_BUDGET_CAPACITY_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(50D)
+                .validator(ConfigDef.Range.atLeast(0))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(RETRY_BUDGET_REFILL_PER_SECOND_CONFIG, ConfigDef.Type.DOUBLE)
+                .documentation(RETRY_BUDGET_REFILL_PER_SECOND_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(5D)
+                .validator(ConfigDef.Range.atLeast(0))
+                .build()
         ).define(
             ConfigKeyBuilder.of(SSL_VERIFY_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
                 .documentation(SSL_VERIFY_ENABLED_DOC)
@@ -140,10 +501,289 @@ class VaultConfigProviderConfig extends AbstractConfig {
                 .defaultValue(1000L)
                 .validator(ConfigDef.Range.atLeast(1000L))
                 .build()
+        ).define(
+            ConfigKeyBuilder.of(CACHE_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(CACHE_ENABLED_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(true)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(CACHE_MAX_ENTRIES_CONFIG, ConfigDef.Type.LONG)
+                .documentation(CACHE_MAX_ENTRIES_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(1000L)
+                .validator(ConfigDef.Range.atLeast(1L))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(REFRESH_AHEAD_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(REFRESH_AHEAD_ENABLED_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(false)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(REFRESH_AHEAD_TTL_FRACTION_CONFIG, ConfigDef.Type.DOUBLE)
+                .documentation(REFRESH_AHEAD_TTL_FRACTION_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(0.75D)
+                .validator(ConfigDef.Range.between(0.1D, 0.95D))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(REFRESH_AHEAD_MAX_STALE_MS_CONFIG, ConfigDef.Type.LONG)
+                .documentation(REFRESH_AHEAD_MAX_STALE_MS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(300000L)
+                .validator(ConfigDef.Range.atLeast(0L))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(SUBSCRIPTION_POLL_INTERVAL_MS_CONFIG, ConfigDef.Type.LONG)
+                .documentation(SUBSCRIPTION_POLL_INTERVAL_MS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(60000L)
+                .validator(ConfigDef.Range.atLeast(1000L))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(KV_VERSION_CONFIG, ConfigDef.Type.INT)
+                .documentation(KV_VERSION_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue(2)
+                .validator(ConfigDef.Range.between(1, 2))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(KV_MOUNTS_CONFIG, ConfigDef.Type.LIST)
+                .documentation(KV_MOUNTS_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue("")
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(KV_VERSION_CHECK_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(KV_VERSION_CHECK_ENABLED_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(false)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(TOKEN_RENEWAL_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(TOKEN_RENEWAL_ENABLED_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue(true)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(TOKEN_RENEWAL_TTL_FRACTION_CONFIG, ConfigDef.Type.DOUBLE)
+                .documentation(TOKEN_RENEWAL_TTL_FRACTION_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(0.5D)
+                .validator(ConfigDef.Range.between(0.1D, 0.9D))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(TOKEN_RENEWAL_JITTER_CONFIG, ConfigDef.Type.DOUBLE)
+                .documentation(TOKEN_RENEWAL_JITTER_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(0.1D)
+                .validator(ConfigDef.Range.between(0D, 0.5D))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(SESSION_SHARED_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(SESSION_SHARED_ENABLED_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(false)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(HTTP_TRANSPORT_CONFIG, ConfigDef.Type.STRING)
+                .documentation(HTTP_TRANSPORT_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(HttpTransportType.Driver.name())
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(HTTP_POOL_SIZE_CONFIG, ConfigDef.Type.INT)
+                .documentation(HTTP_POOL_SIZE_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(16)
+                .validator(ConfigDef.Range.atLeast(1))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(HTTP_CONNECT_TIMEOUT_MS_CONFIG, ConfigDef.Type.INT)
+                .documentation(HTTP_CONNECT_TIMEOUT_MS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(5000)
+                .validator(ConfigDef.Range.atLeast(1))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(HTTP_READ_TIMEOUT_MS_CONFIG, ConfigDef.Type.INT)
+                .documentation(HTTP_READ_TIMEOUT_MS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(30000)
+                .validator(ConfigDef.Range.atLeast(1))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(VIRTUAL_THREADS_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(VIRTUAL_THREADS_ENABLED_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(false)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(RATE_LIMIT_REQUESTS_PER_SECOND_CONFIG, ConfigDef.Type.DOUBLE)
+                .documentation(RATE_LIMIT_REQUESTS_PER_SECOND_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(0D)
+                .validator(ConfigDef.Range.atLeast(0))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(CIRCUIT_BREAKER_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(CIRCUIT_BREAKER_ENABLED_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(false)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(CIRCUIT_BREAKER_FAILURE_THRESHOLD_CONFIG, ConfigDef.Type.INT)
+                .documentation(CIRCUIT_BREAKER_FAILURE_THRESHOLD_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(5)
+                .validator(ConfigDef.Range.atLeast(1))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(CIRCUIT_BREAKER_OPEN_MS_CONFIG, ConfigDef.Type.LONG)
+                .documentation(CIRCUIT_BREAKER_OPEN_MS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(30000L)
+                .validator(ConfigDef.Range.atLeast(0))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(STALE_IF_ERROR_MS_CONFIG, ConfigDef.Type.LONG)
+                .documentation(STALE_IF_ERROR_MS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(0L)
+                .validator(ConfigDef.Range.atLeast(0))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(NEGATIVE_CACHE_TTL_MS_CONFIG, ConfigDef.Type.LONG)
+                .documentation(NEGATIVE_CACHE_TTL_MS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(0L)
+                .validator(ConfigDef.Range.atLeast(0))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(NEGATIVE_CACHE_MAX_ENTRIES_CONFIG, ConfigDef.Type.LONG)
+                .documentation(NEGATIVE_CACHE_MAX_ENTRIES_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(1000L)
+                .validator(ConfigDef.Range.atLeast(1L))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(DIRECTORY_MAX_PATHS_CONFIG, ConfigDef.Type.INT)
+                .documentation(DIRECTORY_MAX_PATHS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(1000)
+                .validator(ConfigDef.Range.atLeast(1))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(PREFETCH_PATHS_CONFIG, ConfigDef.Type.LIST)
+                .documentation(PREFETCH_PATHS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue("")
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(PREFETCH_LIST_PATHS_CONFIG, ConfigDef.Type.LIST)
+                .documentation(PREFETCH_LIST_PATHS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue("")
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(PREFETCH_MAX_PATHS_CONFIG, ConfigDef.Type.INT)
+                .documentation(PREFETCH_MAX_PATHS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(1000)
+                .validator(ConfigDef.Range.atLeast(1))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(PREFETCH_TIMEOUT_MS_CONFIG, ConfigDef.Type.LONG)
+                .documentation(PREFETCH_TIMEOUT_MS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(30000L)
+                .validator(ConfigDef.Range.atLeast(0))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(SNAPSHOT_PATH_CONFIG, ConfigDef.Type.STRING)
+                .documentation(SNAPSHOT_PATH_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue("")
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(SNAPSHOT_PASSWORD_CONFIG, ConfigDef.Type.PASSWORD)
+                .documentation(SNAPSHOT_PASSWORD_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue("")
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(SNAPSHOT_MAX_AGE_MS_CONFIG, ConfigDef.Type.LONG)
+                .documentation(SNAPSHOT_MAX_AGE_MS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(86400000L)
+                .validator(ConfigDef.Range.atLeast(0L))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(SNAPSHOT_WRITE_INTERVAL_MS_CONFIG, ConfigDef.Type.LONG)
+                .documentation(SNAPSHOT_WRITE_INTERVAL_MS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(60000L)
+                .validator(ConfigDef.Range.atLeast(1000L))
+                .build()
         );
   }
 
+  void required(String key, String value) {
+    if (Strings.isNullOrEmpty(value)) {
+      throw new ConfigException(
+          key,
+          value,
+          String.format("Value must be set when '%s' is '%s'.", LOGIN_BY_CONFIG, this.loginBy)
+      );
+    }
+  }
 
+  static Map<String, Integer> kvMounts(List<String> values) {
+    Map<String, Integer> result = new LinkedHashMap<>();
+    for (String value : values) {
+      int index = value.lastIndexOf(':');
+      String mount = index > 0 ? CharMatcher.is('/').trimFrom(value.substring(0, index).trim()) : "";
+      Integer version = index > 0 ? Ints.tryParse(value.substring(index + 1).trim()) : null;
+      if (mount.isEmpty() || null == version || version < 1 || version > 2) {
+        throw new ConfigException(
+            KV_MOUNTS_CONFIG,
+            value,
+            "Value must be in the format of 'mount:version' where version is 1 or 2."
+        );
+      }
+      result.put(mount, version);
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to return the KV mount that a path is stored in.
+   *
+   * @param path path of the secret.
+   * @return the longest mount in {@link #kvMounts} that the path starts with, or null.
+   */
+  public String kvMount(String path) {
+    String result = null;
+    for (String mount : this.kvMounts.keySet()) {
+      if ((path.equals(mount) || path.startsWith(mount + "/")) &&
+          (null == result || mount.length() > result.length())) {
+        result = mount;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to return the version of the KV engine that a path is stored in.
+   *
+   * @param path path of the secret.
+   * @return the version of the mount the path is stored in, or {@link #kvVersion}.
+   */
+  public int kvVersion(String path) {
+    String mount = kvMount(path);
+    return null == mount ? this.kvVersion : this.kvMounts.get(mount);
+  }
 
   /**
    * Method is used to create a VaultConfig
@@ -185,11 +825,15 @@ class VaultConfigProviderConfig extends AbstractConfig {
     if (!Strings.isNullOrEmpty(token.value())) {
       result = result.token(token.value());
     }
-    String prefix = getString(PREFIX_CONFIG);
     if (!Strings.isNullOrEmpty(prefix)) {
       result = result.prefixPath(prefix);
     }
-    String namespace = getString(NAMESPACE_CONFIG);
+    result = result.engineVersion(this.kvVersion);
+    if (!this.kvMounts.isEmpty()) {
+      Map<String, String> secretsEnginePathMap = new LinkedHashMap<>();
+      this.kvMounts.forEach((mount, version) -> secretsEnginePathMap.put(mount + "/", version.toString()));
+      result = result.secretsEnginePathMap(secretsEnginePathMap);
+    }
     if (!Strings.isNullOrEmpty(namespace)) {
       try {
         result = result.nameSpace(namespace);
@@ -211,12 +855,21 @@ class VaultConfigProviderConfig extends AbstractConfig {
     return result;
   }
 
+  public enum HttpTransportType {
+    @Description("Secrets are read with the HTTP client of the Vault driver, which opens a new connection for each request.")
+    Driver,
+    @Description("Secrets are read over connections that are kept alive and reused between requests.")
+    Pooled
+  }
+
   public enum VaultLoginBy {
     @Description("Authentication via the `token\n" + "<https://www.vaultproject.io/docs/auth/token>`_. endpoint.")
     Token,
+    @Description("Authentication via the `AppRole\n" + "<https://www.vaultproject.io/docs/auth/approle>`_. auth method.")
+    AppRole,
+    @Description("Authentication via the `Kubernetes\n" + "<https://www.vaultproject.io/docs/auth/kubernetes>`_. auth method.")
+    Kubernetes,
 
-//    @Description("")
-//    AppRole,
 //    UserPass,
 //    LDAP,
 //    AwsEc2,
@@ -224,7 +877,6 @@ class VaultConfigProviderConfig extends AbstractConfig {
 //    Github,
 //    Jwt,
 //    GCP,
-//    Kubernetes,
 //    ByCert,
   }
 
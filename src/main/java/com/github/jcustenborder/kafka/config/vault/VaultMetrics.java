@@ -0,0 +1,289 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.Gauge;
+import org.apache.kafka.common.metrics.JmxReporter;
+import org.apache.kafka.common.metrics.KafkaMetricsContext;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.MetricsReporter;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Avg;
+import org.apache.kafka.common.metrics.stats.CumulativeCount;
+import org.apache.kafka.common.metrics.stats.CumulativeSum;
+import org.apache.kafka.common.metrics.stats.Max;
+import org.apache.kafka.common.metrics.stats.Percentile;
+import org.apache.kafka.common.metrics.stats.Percentiles;
+import org.apache.kafka.common.metrics.stats.Rate;
+import org.apache.kafka.common.utils.Time;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of a {@link VaultSession}. The metrics are registered with JMX under
+ * `kafka.config.vault:type=vault-config-provider,provider=&lt;id&gt;`. Config providers that share
+ * a session share its metrics, except for the latency of get() and the cache hits and misses of
+ * lookups, which each config provider records under its own id. Metrics of individual requests are also tagged with the first
+ * segment of the path, which is normally the mount the secret is stored in.
+ */
+class VaultMetrics implements Closeable {
+  static final String JMX_PREFIX = "kafka.config.vault";
+  static final String GROUP = "vault-config-provider";
+  static final String PROVIDER_TAG = "provider";
+  static final String PATH_PREFIX_TAG = "path-prefix";
+  static final String STATUS_TAG = "status";
+  static final String OUTCOME_TAG = "outcome";
+  static final double MAX_LATENCY_MS = 30000D;
+  private static final AtomicInteger PROVIDER_ID = new AtomicInteger();
+
+  final Metrics metrics;
+  final Map<String, String> tags;
+  static final int MAX_CACHED_PATHS = 10000;
+  private final ConcurrentMap<String, Sensor> sensors = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, PathMetrics> prefixMetrics = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, PathMetrics> pathMetrics = new ConcurrentHashMap<>();
+
+  VaultMetrics(Time time) {
+    List<MetricsReporter> reporters = Collections.singletonList(new JmxReporter());
+    this.metrics = new Metrics(new MetricConfig(), reporters, time, new KafkaMetricsContext(JMX_PREFIX));
+    this.tags = Collections.singletonMap(PROVIDER_TAG, Integer.toString(PROVIDER_ID.incrementAndGet()));
+  }
+
+  /**
+   * Method is used to return the prefix of a path that metrics are tagged with.
+   *
+   * @param path path of the secret.
+   * @return the first segment of the path.
+   */
+  static String pathPrefix(String path) {
+    final int index = path.indexOf('/');
+    return index > 0 ? path.substring(0, index) : path;
+  }
+
+  Map<String, String> tags(String... keyValues) {
+    Map<String, String> result = new LinkedHashMap<>(this.tags);
+    for (int i = 0; i < keyValues.length; i += 2) {
+      result.put(keyValues[i], keyValues[i + 1]);
+    }
+    return result;
+  }
+
+  MetricName metricName(String name, String description) {
+    return this.metrics.metricName(name, GROUP, description, this.tags);
+  }
+
+  /**
+   * Method is used to register a metric that reports the current value of a supplier.
+   *
+   * @param name        name of the metric.
+   * @param description description of the metric.
+   * @param value       supplier of the value.
+   */
+  void gauge(String name, String description, Supplier<? extends Number> value) {
+    gauge(metricName(name, description), value);
+  }
+
+  void gauge(MetricName metricName, Supplier<? extends Number> value) {
+    this.metrics.addMetric(metricName, (Gauge<Number>) (config, now) -> value.get());
+  }
+
+  /**
+   * Method is used to create a sensor that counts the number of times it is recorded.
+   *
+   * @param name        name of the metric.
+   * @param description description of the metric.
+   * @return sensor to record.
+   */
+  Sensor counter(String name, String description) {
+    Sensor sensor = this.metrics.sensor(name);
+    sensor.add(metricName(name, description), new CumulativeCount());
+    return sensor;
+  }
+
+  /**
+   * Method is used to create a sensor that reports the average and maximum of the recorded values
+   * as `&lt;name&gt;-avg` and `&lt;name&gt;-max`.
+   *
+   * @param name        name of the metric.
+   * @param description description of the metric.
+   * @return sensor to record.
+   */
+  Sensor avgMax(String name, String description) {
+    Sensor sensor = this.metrics.sensor(name);
+    sensor.add(metricName(name + "-avg", "The average " + description), new Avg());
+    sensor.add(metricName(name + "-max", "The maximum " + description), new Max());
+    return sensor;
+  }
+
+  /**
+   * Method is used to return the sensors for the prefix of a path. The sensors are cached by path
+   * so the sensor names are only built the first time a path is seen.
+   *
+   * @param path path of the secret.
+   * @return sensors for the prefix of the path.
+   */
+  PathMetrics pathMetrics(String path) {
+    PathMetrics result = this.pathMetrics.get(path);
+    if (null == result) {
+      result = this.prefixMetrics.computeIfAbsent(pathPrefix(path), PathMetrics::new);
+      if (this.pathMetrics.size() < MAX_CACHED_PATHS) {
+        this.pathMetrics.putIfAbsent(path, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to record the time taken to resolve a path for a caller.
+   *
+   * @param path      path that was read.
+   * @param latencyMs number of milliseconds the caller waited.
+   */
+  void recordGet(String path, long latencyMs) {
+    pathMetrics(path).get.record(Math.min(latencyMs, MAX_LATENCY_MS));
+  }
+
+  /**
+   * Method is used to record a lookup of a path in the cache.
+   *
+   * @param path path that was looked up.
+   * @param hit  true if the path was served from the cache.
+   */
+  void recordCacheLookup(String path, boolean hit) {
+    PathMetrics pathMetrics = pathMetrics(path);
+    (hit ? pathMetrics.cacheHits : pathMetrics.cacheMisses).record();
+  }
+
+  /**
+   * Method is used to record a response from Vault.
+   *
+   * @param path   path that was requested.
+   * @param status http status of the response. `0` if a response was not received.
+   * @param bytes  size of the response body.
+   */
+  void recordResponse(String path, int status, long bytes) {
+    PathMetrics pathMetrics = pathMetrics(path);
+    pathMetrics.requests(status).record();
+    pathMetrics.bytesReceived.record(bytes);
+  }
+
+  /**
+   * Method is used to record a retry of a request.
+   *
+   * @param path path that is retried.
+   */
+  void recordRetry(String path) {
+    pathMetrics(path).retries.record();
+  }
+
+  /**
+   * Sensors of the paths that share a prefix.
+   */
+  class PathMetrics {
+    final String prefix;
+    final Sensor get;
+    final Sensor cacheHits;
+    final Sensor cacheMisses;
+    final Sensor bytesReceived;
+    final Sensor retries;
+    final AtomicReferenceArray<Sensor> requests = new AtomicReferenceArray<>(600);
+
+    PathMetrics(String prefix) {
+      this.prefix = prefix;
+      final Map<String, String> tags = tags(PATH_PREFIX_TAG, prefix);
+      this.get = sensor("get-latency:" + prefix, sensor -> {
+        sensor.add(metrics.metricName("get-latency-ms-avg", GROUP, "The average number of milliseconds to resolve a path.", tags), new Avg());
+        sensor.add(metrics.metricName("get-latency-ms-max", GROUP, "The maximum number of milliseconds to resolve a path.", tags), new Max());
+        sensor.add(metrics.metricName("get-total", GROUP, "The number of paths resolved.", tags), new CumulativeCount());
+        sensor.add(new Percentiles(
+            4000,
+            MAX_LATENCY_MS,
+            Percentiles.BucketSizing.LINEAR,
+            percentile("get-latency-ms-p50", 50D, tags),
+            percentile("get-latency-ms-p95", 95D, tags),
+            percentile("get-latency-ms-p99", 99D, tags)
+        ));
+      });
+      this.cacheHits = sensor("cache-hits:" + prefix, sensor -> sensor.add(
+          metrics.metricName("cache-hits-total", GROUP, "The number of paths served from the cache.", tags),
+          new CumulativeCount()
+      ));
+      this.cacheMisses = sensor("cache-misses:" + prefix, sensor -> sensor.add(
+          metrics.metricName("cache-misses-total", GROUP, "The number of paths that were not in the cache.", tags),
+          new CumulativeCount()
+      ));
+      this.bytesReceived = sensor("bytes-received:" + prefix, sensor -> {
+        sensor.add(metrics.metricName("bytes-received-total", GROUP, "The number of bytes received from Vault.", tags), new CumulativeSum());
+        sensor.add(metrics.metricName("bytes-received-rate", GROUP, "The number of bytes received from Vault per second.", tags), new Rate());
+      });
+      this.retries = sensor("retries:" + prefix, sensor -> sensor.add(
+          metrics.metricName("retries-total", GROUP, "The number of requests to Vault that were retried.", tags),
+          new CumulativeCount()
+      ));
+    }
+
+    Sensor requests(int status) {
+      final int index = status >= 0 && status < this.requests.length() ? status : 0;
+      Sensor result = this.requests.get(index);
+      if (null == result) {
+        final String statusText = Integer.toString(index);
+        result = sensor("requests:" + this.prefix + ":" + statusText, sensor -> sensor.add(
+            metrics.metricName("requests-total", GROUP, "The number of responses from Vault by http status. " +
+                "A status of 0 is a request that did not receive a response.", tags(PATH_PREFIX_TAG, this.prefix, STATUS_TAG, statusText)),
+            new CumulativeCount()
+        ));
+        this.requests.set(index, result);
+      }
+      return result;
+    }
+  }
+
+  Percentile percentile(String name, double percentile, Map<String, String> tags) {
+    return new Percentile(
+        this.metrics.metricName(name, GROUP, String.format("The %sth percentile of the number of milliseconds to resolve a path.", (int) percentile), tags),
+        percentile
+    );
+  }
+
+  Sensor sensor(String name, Consumer<Sensor> initializer) {
+    Sensor result = this.sensors.get(name);
+    if (null == result) {
+      result = this.sensors.computeIfAbsent(name, key -> {
+        Sensor sensor = this.metrics.sensor(key);
+        initializer.accept(sensor);
+        return sensor;
+      });
+    }
+    return result;
+  }
+
+  @Override
+  public void close() {
+    this.metrics.close();
+  }
+}
@@ -0,0 +1,395 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.Vault;
+import com.bettercloud.vault.VaultConfig;
+import com.bettercloud.vault.VaultException;
+import com.google.common.base.Strings;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.utils.Time;
+import org.apache.kafka.connect.errors.ConnectException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * The Vault clients, token and secret cache used by a config provider. A session can be shared by
+ * every config provider in the JVM that has the same configuration. See {@link VaultSessions}.
+ */
+class VaultSession implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(VaultSession.class);
+  final VaultConfigProviderConfig config;
+  final Function<VaultConfig, Vault> vaultFactory;
+  final Time time;
+  final List<VaultConfig> vaultConfigs = new CopyOnWriteArrayList<>();
+  Vault vault;
+  Vault kvV1Vault;
+  Vault kvV2Vault;
+  VaultTransport transport;
+  ExecutorService executor;
+  ScheduledExecutorService timer;
+  int prefixPathDepth;
+  SecretCache cache;
+  RefreshAheadScheduler refreshAheadScheduler;
+  SecretSnapshot snapshot;
+  TokenRenewalScheduler tokenRenewalScheduler;
+  CircuitBreaker circuitBreaker;
+  VaultMetrics metrics;
+  NegativeCache negativeCache;
+  SecretReader reader;
+
+  VaultSession(VaultConfigProviderConfig config, Function<VaultConfig, Vault> vaultFactory, Time time) {
+    this.config = config;
+    this.vaultFactory = vaultFactory;
+    this.time = time;
+  }
+
+  /**
+   * Method is used to create the Vault clients and authenticate.
+   */
+  void open() {
+    this.metrics = new VaultMetrics(this.time);
+    this.executor = ioExecutor(this.config.virtualThreadsEnabled, this.config.httpPoolSize);
+    VaultConfig config = this.config.createConfig();
+    this.vault = vault(config);
+    this.prefixPathDepth = config.getPrefixPathDepth();
+    // Each read is routed to a client for the version of the mount the path is stored in. The
+    // metadata endpoint of KV version 2 is read as a KV version 1 path so the driver does not rewrite it.
+    final boolean kvV1Required = this.config.kvVersionCheckEnabled || this.config.kvMounts.containsValue(1);
+    final boolean kvV2Required = this.config.kvMounts.containsValue(2);
+    if (1 == this.config.kvVersion) {
+      this.kvV1Vault = this.vault;
+      this.kvV2Vault = kvV2Required ? vault(this.config.createConfig().engineVersion(2)) : null;
+    } else {
+      this.kvV1Vault = kvV1Required ? vault(this.config.createConfig().engineVersion(1)) : null;
+      this.kvV2Vault = this.vault;
+    }
+    this.timer = Executors.newSingleThreadScheduledExecutor(threadFactory("vault-retry"));
+    final Retrier retrier = new Retrier(
+        this.timer,
+        this.config.maxRetries,
+        this.config.retryBackoffInitialMs,
+        this.config.retryBackoffMaxMs,
+        this.config.retryMaxElapsedMs,
+        new RetryBudget(this.config.retryBudgetCapacity, this.config.retryBudgetRefillPerSecond, this.time),
+        rateLimiter(),
+        this.metrics,
+        this.time
+    );
+    if (VaultConfigProviderConfig.HttpTransportType.Pooled == this.config.httpTransport) {
+      this.transport = new HttpTransport(
+          config,
+          this.config.httpPoolSize,
+          this.config.httpConnectTimeoutMs,
+          this.config.httpReadTimeoutMs,
+          this.executor,
+          retrier,
+          this.metrics
+      );
+    } else {
+      this.transport = new DriverTransport(
+          this.kvV1Vault,
+          this.kvV2Vault,
+          this.config.retryInterval,
+          this.executor,
+          retrier,
+          this.metrics
+      );
+    }
+    if (this.config.circuitBreakerEnabled) {
+      this.circuitBreaker = new CircuitBreaker(
+          this.config.circuitBreakerFailureThreshold,
+          this.config.circuitBreakerOpenMs,
+          this.time
+      );
+      this.transport = new CircuitBreakerTransport(this.transport, this.circuitBreaker);
+      this.metrics.gauge(
+          "circuit-breaker-state",
+          "The state of the circuit breaker. 0 = closed, 1 = open, 2 = half open.",
+          () -> this.circuitBreaker.state().value
+      );
+      this.metrics.gauge(
+          "circuit-breaker-rejected-total",
+          "The number of requests that were rejected because the circuit breaker was open.",
+          this.circuitBreaker::rejected
+      );
+    }
+    if (this.config.negativeCacheTTLMs > 0) {
+      this.negativeCache = new NegativeCache(this.config.negativeCacheMaxEntries, this.config.negativeCacheTTLMs, this.time);
+      this.metrics.gauge("negative-cache-size", "The number of paths that were not found or denied that are cached.", this.negativeCache::size);
+    }
+    if (this.config.cacheEnabled) {
+      this.cache = new SecretCache(this.config.cacheMaxEntries, this.time);
+      this.metrics.gauge("cache-size", "The number of secrets in the cache.", this.cache::size);
+      this.metrics.gauge("cache-evictions-total", "The number of secrets evicted from the cache because it was full.", this.cache::evictions);
+      this.metrics.gauge("cache-hit-ratio", "The fraction of lookups that were served from the cache.", () -> {
+        final long hits = this.cache.hits();
+        final long total = hits + this.cache.misses();
+        return 0 == total ? 0D : (double) hits / total;
+      });
+    }
+    this.reader = new SecretReader(
+        this.config,
+        this.transport,
+        this.cache,
+        this.negativeCache,
+        this.metrics,
+        this.prefixPathDepth,
+        this.time
+    );
+    if (null != this.cache) {
+      if (this.config.refreshAheadEnabled) {
+        this.refreshAheadScheduler = new RefreshAheadScheduler(
+            this.cache,
+            this.reader::refresh,
+            this.config.refreshAheadTTLFraction,
+            this.config.refreshAheadMaxStaleMs,
+            this.config.retryInterval,
+            this.time
+        );
+        this.reader.refreshAheadScheduler = this.refreshAheadScheduler;
+      }
+      if (!Strings.isNullOrEmpty(this.config.snapshotPath)) {
+        this.snapshot = new SecretSnapshot(
+            Paths.get(this.config.snapshotPath),
+            this.config.snapshotPassword.value().toCharArray(),
+            VaultSessions.Key.of(this.config).fingerprint.asBytes(),
+            this.config.snapshotMaxAgeMs,
+            this.time
+        );
+        this.reader.snapshot = this.snapshot;
+      }
+    } else {
+      if (this.config.refreshAheadEnabled) {
+        log.warn(
+            "open() - {} is enabled but {} is disabled. Secrets will not be refreshed in the background.",
+            VaultConfigProviderConfig.REFRESH_AHEAD_ENABLED_CONFIG,
+            VaultConfigProviderConfig.CACHE_ENABLED_CONFIG
+        );
+      }
+      if (!Strings.isNullOrEmpty(this.config.snapshotPath)) {
+        log.warn(
+            "open() - {} is set but {} is disabled. Secrets will not be written to a snapshot.",
+            VaultConfigProviderConfig.SNAPSHOT_PATH_CONFIG,
+            VaultConfigProviderConfig.CACHE_ENABLED_CONFIG
+        );
+      }
+    }
+
+    AuthHandlers.AuthHandler authHandler = AuthHandlers.getHandler(this.config.loginBy);
+    AuthHandlers.AuthConfig authConfig;
+    try {
+      authConfig = authHandler.auth(this.config, this.vault);
+    } catch (VaultException ex) {
+      throw new ConnectException(
+          "Exception while authenticating to Vault",
+          ex
+      );
+    }
+    log.trace("authConfig = {}", authConfig);
+    if (null != authConfig.token) {
+      token(authConfig.token);
+    }
+    if (this.config.tokenRenewalEnabled) {
+      this.tokenRenewalScheduler = new TokenRenewalScheduler(
+          () -> AuthHandlers.renew(this.vault),
+          VaultConfigProviderConfig.VaultLoginBy.Token == this.config.loginBy ? null : () -> authHandler.auth(this.config, this.vault),
+          this::token,
+          this.config.tokenRenewalTTLFraction,
+          this.config.tokenRenewalJitter,
+          this.config.retryInterval,
+          this.executor,
+          this.time
+      );
+      this.tokenRenewalScheduler.schedule(authConfig);
+      final TokenRenewalScheduler scheduler = this.tokenRenewalScheduler;
+      this.metrics.gauge(
+          "token-expires-in-ms",
+          "The number of milliseconds until the Vault token expires. -1 if the token does not expire.",
+          scheduler::expiresInMs
+      );
+      final String renewalsDescription = "The number of token renewals by outcome.";
+      this.metrics.gauge(this.metrics.metrics.metricName("token-renewals-total", VaultMetrics.GROUP, renewalsDescription,
+          this.metrics.tags(VaultMetrics.OUTCOME_TAG, "success")), scheduler::renewed);
+      this.metrics.gauge(this.metrics.metrics.metricName("token-renewals-total", VaultMetrics.GROUP, renewalsDescription,
+          this.metrics.tags(VaultMetrics.OUTCOME_TAG, "failure")), scheduler::renewFailed);
+      final String loginsDescription = "The number of times the config provider authenticated again by outcome.";
+      this.metrics.gauge(this.metrics.metrics.metricName("token-logins-total", VaultMetrics.GROUP, loginsDescription,
+          this.metrics.tags(VaultMetrics.OUTCOME_TAG, "success")), scheduler::loggedIn);
+      this.metrics.gauge(this.metrics.metrics.metricName("token-logins-total", VaultMetrics.GROUP, loginsDescription,
+          this.metrics.tags(VaultMetrics.OUTCOME_TAG, "failure")), scheduler::loginFailed);
+    } else if (null != authConfig.token && authConfig.ttlMs > 0) {
+      log.warn(
+          "open() - {} is disabled. The token returned by {} login expires in {} ms and will not be refreshed.",
+          VaultConfigProviderConfig.TOKEN_RENEWAL_ENABLED_CONFIG,
+          this.config.loginBy,
+          authConfig.ttlMs
+      );
+    }
+
+    if (null != this.snapshot) {
+      // Restored secrets are only served for the minimum ttl. Each one is read again from Vault in
+      // the background on a single thread so a restart does not flood Vault with requests.
+      this.snapshot.start(
+          this.cache,
+          key -> SingleFlight.join(this.reader.refresh(key)),
+          this.config.minimumSecretTTL,
+          this.config.snapshotWriteIntervalMs
+      );
+    }
+    new SecretPrefetcher(this.config, this.reader, this.time).prefetch();
+  }
+
+  RateLimiter rateLimiter() {
+    if (this.config.rateLimitRequestsPerSecond <= 0D) {
+      return null;
+    }
+    Sensor waitTime = this.metrics.avgMax(
+        "rate-limit-wait-time-ms",
+        "number of milliseconds a request waited for the rate limiter before it was sent to Vault."
+    );
+    return new RateLimiter(this.config.rateLimitRequestsPerSecond, this.time, waitTime);
+  }
+
+  /**
+   * Method is used to return the secret stored at a path if it is cached.
+   *
+   * @param path    path of the secret.
+   * @param metrics metrics of the config provider the lookup is recorded to.
+   * @return the entry or null if it is not cached or has expired.
+   */
+  SecretCache.Entry cachedEntry(String path, VaultMetrics metrics) {
+    return this.reader.cachedEntry(path, metrics);
+  }
+
+  /**
+   * Method is used to read the secret stored at a path for a lookup of some of its keys. See
+   * {@link SecretReader#lookupAsync(String, Set)}.
+   *
+   * @param path path of the secret.
+   * @param keys keys that were requested.
+   * @return future that is completed with the entry for the path.
+   */
+  CompletableFuture<SecretCache.Entry> lookupAsync(String path, Set<String> keys) {
+    return this.reader.lookupAsync(path, keys);
+  }
+
+  SecretCache.Entry entry(String path, boolean refreshed) {
+    return this.reader.entry(path, refreshed);
+  }
+
+  SecretCache.Key key(String path) {
+    return this.reader.key(path);
+  }
+
+  /**
+   * Method is used to set the token of every client that was created by the session.
+   *
+   * @param token token to set.
+   */
+  void token(String token) {
+    for (VaultConfig vaultConfig : this.vaultConfigs) {
+      vaultConfig.token(token);
+    }
+  }
+
+  /**
+   * Method is used to create the executor that Vault I/O is run on. Virtual threads are used if
+   * they are enabled and supported by the JVM, otherwise a bounded pool of platform threads is used.
+   *
+   * @param virtualThreadsEnabled true if virtual threads should be used.
+   * @param threads               number of platform threads if virtual threads are not used.
+   * @return executor.
+   */
+  static ExecutorService ioExecutor(boolean virtualThreadsEnabled, int threads) {
+    if (virtualThreadsEnabled) {
+      // Looked up reflectively because the project is compiled for Java 8.
+      try {
+        Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        ExecutorService result = (ExecutorService) method.invoke(null);
+        log.info("ioExecutor() - Using virtual threads for Vault I/O.");
+        return result;
+      } catch (ReflectiveOperationException | RuntimeException ex) {
+        log.warn(
+            "ioExecutor() - Virtual threads are not supported by this JVM. Using a pool of {} threads for Vault I/O.",
+            threads
+        );
+        log.debug("ioExecutor() - Exception thrown creating virtual thread executor", ex);
+      }
+    }
+    return Executors.newFixedThreadPool(threads, threadFactory("vault-io"));
+  }
+
+  static ThreadFactory threadFactory(String prefix) {
+    final AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  Vault vault(VaultConfig config) {
+    this.vaultConfigs.add(config);
+    return this.vaultFactory.apply(config);
+  }
+
+  @Override
+  public void close() {
+    if (null != this.transport) {
+      this.transport.close();
+    }
+    if (null != this.timer) {
+      this.timer.shutdownNow();
+    }
+    if (null != this.executor) {
+      this.executor.shutdownNow();
+    }
+    if (null != this.tokenRenewalScheduler) {
+      this.tokenRenewalScheduler.close();
+    }
+    if (null != this.refreshAheadScheduler) {
+      this.refreshAheadScheduler.close();
+    }
+    if (null != this.snapshot) {
+      this.snapshot.close(this.cache);
+    }
+    if (null != this.cache) {
+      log.debug("close() - cache hits = {} misses = {} evictions = {}",
+          this.cache.hits(), this.cache.misses(), this.cache.evictions());
+      this.cache.invalidateAll();
+    }
+    if (null != this.metrics) {
+      this.metrics.close();
+    }
+  }
+
+
+}
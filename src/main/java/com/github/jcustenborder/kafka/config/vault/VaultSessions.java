@@ -0,0 +1,187 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.Vault;
+import com.bettercloud.vault.VaultConfig;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.apache.kafka.common.config.types.Password;
+import org.apache.kafka.common.utils.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * JVM wide registry of {@link VaultSession}. Kafka creates a config provider for every client that
+ * uses one, so config providers with the same configuration share a single session. Sessions are
+ * reference counted and closed when the last config provider using them is closed.
+ */
+class VaultSessions {
+  private static final Logger log = LoggerFactory.getLogger(VaultSessions.class);
+  static final Map<Key, Reference> SESSIONS = new HashMap<>();
+
+  static class Reference {
+    /**
+     * Completed once the session has been opened by the config provider that created it.
+     */
+    final CompletableFuture<VaultSession> session = new CompletableFuture<>();
+    int count;
+  }
+
+  /**
+   * Method is used to return the session for a configuration, creating it if it does not exist.
+   * The lock is only held to find the session. Opening a session authenticates and prefetches
+   * secrets, so a session is opened by the caller that created it while callers with the same
+   * configuration wait for it. Callers with other configurations are not blocked.
+   *
+   * @param config       configuration of the config provider.
+   * @param vaultFactory used to create the Vault clients if the session is created.
+   * @param time         time used by the session if it is created.
+   * @return session that must be released with {@link #release(VaultSession)}.
+   */
+  static VaultSession acquire(VaultConfigProviderConfig config, Function<VaultConfig, Vault> vaultFactory, Time time) {
+    final Key key = Key.of(config);
+    final Reference reference;
+    final boolean created;
+    synchronized (VaultSessions.class) {
+      Reference existing = SESSIONS.get(key);
+      created = null == existing;
+      reference = created ? new Reference() : existing;
+      if (created) {
+        SESSIONS.put(key, reference);
+      }
+      reference.count++;
+    }
+    if (!created) {
+      log.info("acquire() - Reusing session for {}", key);
+      return SingleFlight.join(reference.session);
+    }
+    VaultSession session = new VaultSession(config, vaultFactory, time);
+    try {
+      session.open();
+    } catch (RuntimeException ex) {
+      synchronized (VaultSessions.class) {
+        SESSIONS.remove(key, reference);
+      }
+      reference.session.completeExceptionally(ex);
+      session.close();
+      throw ex;
+    }
+    log.info("acquire() - Created session for {}", key);
+    reference.session.complete(session);
+    return session;
+  }
+
+  /**
+   * Method is used to release a session. The session is closed once it is no longer used.
+   *
+   * @param session session to release.
+   */
+  static void release(VaultSession session) {
+    final Key key = Key.of(session.config);
+    synchronized (VaultSessions.class) {
+      Reference reference = SESSIONS.get(key);
+      if (null == reference || reference.session.getNow(null) != session) {
+        return;
+      }
+      reference.count--;
+      if (reference.count > 0) {
+        return;
+      }
+      SESSIONS.remove(key);
+    }
+    log.info("release() - Closing session for {}", key);
+    session.close();
+  }
+
+  static final class Key {
+    final String address;
+    final String namespace;
+    final String prefix;
+    final VaultConfigProviderConfig.VaultLoginBy loginBy;
+    /**
+     * Hash of every setting including the credentials so only identical configurations share a session.
+     */
+    final HashCode fingerprint;
+
+    Key(String address, String namespace, String prefix, VaultConfigProviderConfig.VaultLoginBy loginBy, HashCode fingerprint) {
+      this.address = address;
+      this.namespace = namespace;
+      this.prefix = prefix;
+      this.loginBy = loginBy;
+      this.fingerprint = fingerprint;
+    }
+
+    static Key of(VaultConfigProviderConfig config) {
+      Hasher hasher = Hashing.sha256().newHasher();
+      for (Map.Entry<String, ?> e : new TreeMap<>(config.values()).entrySet()) {
+        Object value = e.getValue() instanceof Password ? ((Password) e.getValue()).value() : e.getValue();
+        hasher.putString(e.getKey(), StandardCharsets.UTF_8)
+            .putByte((byte) 0)
+            .putString(String.valueOf(value), StandardCharsets.UTF_8)
+            .putByte((byte) 0);
+      }
+      return new Key(
+          config.getString(VaultConfigProviderConfig.ADDRESS_CONFIG),
+          config.namespace,
+          config.prefix,
+          config.loginBy,
+          hasher.hash()
+      );
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return Objects.equals(address, key.address) &&
+          Objects.equals(namespace, key.namespace) &&
+          Objects.equals(prefix, key.prefix) &&
+          loginBy == key.loginBy &&
+          Objects.equals(fingerprint, key.fingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(address, namespace, prefix, loginBy, fingerprint);
+    }
+
+    @Override
+    public String toString() {
+      return new StringJoiner(", ", Key.class.getSimpleName() + "[", "]")
+          .add("address='" + address + "'")
+          .add("namespace='" + namespace + "'")
+          .add("prefix='" + prefix + "'")
+          .add("loginBy=" + loginBy)
+          .toString();
+    }
+  }
+}
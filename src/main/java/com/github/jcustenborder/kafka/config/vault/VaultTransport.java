@@ -0,0 +1,68 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.response.LogicalResponse;
+
+import java.io.Closeable;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transport used to read secrets from Vault.
+ */
+interface VaultTransport extends Closeable {
+  /**
+   * Method is used to read a path from Vault. Responses with a 4xx status code are returned rather
+   * than thrown so the caller can decide how to handle them.
+   *
+   * @param path          path to read. KV version 2 paths are passed without the `data` qualifier.
+   * @param engineVersion version of the KV secrets engine the path is stored in.
+   * @param version       version of the secret to read or null for the latest version.
+   * @return future completed with the response from Vault, or with a {@link com.bettercloud.vault.VaultException}
+   * if Vault could not be read after retrying.
+   */
+  CompletableFuture<LogicalResponse> read(String path, int engineVersion, Integer version);
+
+  /**
+   * Method is used to read the data of a secret. Responses with a 4xx status code are returned as a
+   * {@link Secret} without data.
+   *
+   * @param path          path to read. KV version 2 paths are passed without the `data` qualifier.
+   * @param engineVersion version of the KV secrets engine the path is stored in.
+   * @param version       version of the secret to read or null for the latest version.
+   * @param keys          keys to return. All keys are returned if this is null or empty.
+   * @return future completed with the secret, or with a {@link com.bettercloud.vault.VaultException}
+   * if Vault could not be read after retrying.
+   */
+  default CompletableFuture<Secret> readSecret(String path, int engineVersion, Integer version, Set<String> keys) {
+    return read(path, engineVersion, version).thenApply(logicalResponse -> Secret.of(logicalResponse, engineVersion, keys));
+  }
+
+  /**
+   * Method is used to list the keys stored under a path.
+   *
+   * @param path          path to list. KV version 2 paths are passed without the `metadata` qualifier.
+   * @param engineVersion version of the KV secrets engine the path is stored in.
+   * @return future completed with the response from Vault. The keys are returned by
+   * {@link LogicalResponse#getListData()}.
+   */
+  CompletableFuture<LogicalResponse> list(String path, int engineVersion);
+
+  @Override
+  default void close() {
+  }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.Vault;
+import com.bettercloud.vault.json.Json;
+import com.bettercloud.vault.json.JsonObject;
+import com.google.common.collect.ImmutableMap;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.kafka.common.config.ConfigException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AuthHandlersTest {
+  HttpServer server;
+  Map<String, JsonObject> requests;
+  AtomicInteger logins;
+  Map<String, String> settings;
+
+  @BeforeEach
+  public void before() throws IOException {
+    this.requests = new ConcurrentHashMap<>();
+    this.logins = new AtomicInteger();
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    this.server.createContext("/v1/auth/approle/login", exchange -> login(exchange, "approle-token"));
+    this.server.createContext("/v1/auth/k8s/login", exchange -> login(exchange, "kubernetes-token"));
+    this.server.createContext("/v1/secret/data/app", exchange -> {
+      String token = exchange.getRequestHeaders().getFirst("X-Vault-Token");
+      if ("approle-token".equals(token)) {
+        respond(exchange, 200, Json.object()
+            .add("lease_duration", 0)
+            .add("data", Json.object()
+                .add("data", Json.object().add("password", "secret"))
+                .add("metadata", Json.object().add("version", 1))
+            ));
+      } else {
+        respond(exchange, 403, Json.object().add("errors", Json.array("permission denied")));
+      }
+    });
+    this.server.start();
+
+    this.settings = new LinkedHashMap<>();
+    this.settings.put(
+        VaultConfigProviderConfig.ADDRESS_CONFIG,
+        String.format("http://%s:%s", this.server.getAddress().getHostString(), this.server.getAddress().getPort())
+    );
+    this.settings.put(VaultConfigProviderConfig.MAX_RETRIES_CONFIG, "0");
+  }
+
+  @AfterEach
+  public void after() {
+    this.server.stop(0);
+  }
+
+  void login(HttpExchange exchange, String token) throws IOException {
+    this.logins.incrementAndGet();
+    String body = new String(readAll(exchange), StandardCharsets.UTF_8);
+    this.requests.put(exchange.getRequestURI().getPath(), Json.parse(body).asObject());
+    respond(exchange, 200, Json.object()
+        .add("lease_id", "")
+        .add("renewable", false)
+        .add("lease_duration", 0)
+        .add("auth", Json.object()
+            .add("client_token", token)
+            .add("accessor", "accessor")
+            .add("metadata", Json.object())
+            .add("renewable", true)
+            .add("lease_duration", 3600)
+            .add("policies", Json.array("default"))
+        ));
+  }
+
+  static byte[] readAll(HttpExchange exchange) throws IOException {
+    byte[] buffer = new byte[1024];
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    int read;
+    while ((read = exchange.getRequestBody().read(buffer)) > 0) {
+      output.write(buffer, 0, read);
+    }
+    return output.toByteArray();
+  }
+
+  static void respond(HttpExchange exchange, int status, JsonObject body) throws IOException {
+    byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(bytes);
+    }
+  }
+
+  @Test
+  public void appRole() throws Exception {
+    this.settings.put(VaultConfigProviderConfig.LOGIN_BY_CONFIG, "AppRole");
+    this.settings.put(VaultConfigProviderConfig.APPROLE_ROLE_ID_CONFIG, "role");
+    this.settings.put(VaultConfigProviderConfig.APPROLE_SECRET_ID_CONFIG, "secret");
+    VaultConfigProviderConfig config = new VaultConfigProviderConfig(this.settings);
+    AuthHandlers.AuthConfig authConfig = AuthHandlers.getHandler(config.loginBy)
+        .auth(config, new Vault(config.createConfig()));
+    assertEquals("approle-token", authConfig.token);
+    assertTrue(authConfig.isRenewable);
+    assertEquals(3600000L, authConfig.ttlMs);
+    JsonObject request = this.requests.get("/v1/auth/approle/login");
+    assertEquals("role", request.getString("role_id", null));
+    assertEquals("secret", request.getString("secret_id", null));
+  }
+
+  @Test
+  public void kubernetes(@TempDir Path directory) throws Exception {
+    Path jwt = directory.resolve("token");
+    Files.write(jwt, "service-account-jwt\n".getBytes(StandardCharsets.UTF_8));
+    this.settings.put(VaultConfigProviderConfig.LOGIN_BY_CONFIG, "Kubernetes");
+    this.settings.put(VaultConfigProviderConfig.KUBERNETES_PATH_CONFIG, "k8s");
+    this.settings.put(VaultConfigProviderConfig.KUBERNETES_ROLE_CONFIG, "connect");
+    this.settings.put(VaultConfigProviderConfig.KUBERNETES_JWT_PATH_CONFIG, jwt.toString());
+    VaultConfigProviderConfig config = new VaultConfigProviderConfig(this.settings);
+    AuthHandlers.AuthConfig authConfig = AuthHandlers.getHandler(config.loginBy)
+        .auth(config, new Vault(config.createConfig()));
+    assertEquals("kubernetes-token", authConfig.token);
+    JsonObject request = this.requests.get("/v1/auth/k8s/login");
+    assertEquals("connect", request.getString("role", null));
+    assertEquals("service-account-jwt", request.getString("jwt", null));
+  }
+
+  @Test
+  public void appRoleRequiresRoleId() {
+    this.settings.put(VaultConfigProviderConfig.LOGIN_BY_CONFIG, "AppRole");
+    this.settings.put(VaultConfigProviderConfig.APPROLE_SECRET_ID_CONFIG, "secret");
+    assertThrows(ConfigException.class, () -> new VaultConfigProviderConfig(this.settings));
+  }
+
+  @Test
+  public void configProviderUsesLoginToken() throws IOException {
+    this.settings.put(VaultConfigProviderConfig.LOGIN_BY_CONFIG, "AppRole");
+    this.settings.put(VaultConfigProviderConfig.APPROLE_ROLE_ID_CONFIG, "role");
+    this.settings.put(VaultConfigProviderConfig.APPROLE_SECRET_ID_CONFIG, "secret");
+    VaultConfigProvider configProvider = new VaultConfigProvider();
+    try {
+      configProvider.configure(this.settings);
+      assertEquals(ImmutableMap.of("password", "secret"), configProvider.get("secret/app").data());
+      assertEquals(ImmutableMap.of("password", "secret"), configProvider.get("secret/app").data());
+      assertEquals(1, this.logins.get(), "the login token should be reused");
+    } finally {
+      configProvider.close();
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class CircuitBreakerTest {
+  MockTime time;
+  CircuitBreaker circuitBreaker;
+
+  @BeforeEach
+  public void before() {
+    this.time = new MockTime();
+    this.circuitBreaker = new CircuitBreaker(3, 10000L, this.time);
+  }
+
+  void fail(int count) {
+    for (int i = 0; i < count; i++) {
+      assertTrue(this.circuitBreaker.tryAcquire());
+      this.circuitBreaker.onFailure();
+    }
+  }
+
+  @Test
+  public void opensAfterConsecutiveFailures() {
+    fail(2);
+    assertTrue(this.circuitBreaker.tryAcquire());
+    this.circuitBreaker.onSuccess();
+    fail(2);
+    assertEquals(CircuitBreaker.State.Closed, this.circuitBreaker.state());
+    fail(1);
+    assertEquals(CircuitBreaker.State.Open, this.circuitBreaker.state());
+    assertFalse(this.circuitBreaker.tryAcquire());
+    assertEquals(1L, this.circuitBreaker.rejected());
+  }
+
+  @Test
+  public void halfOpenProbeSucceeds() {
+    fail(3);
+    this.time.sleep(10000L);
+    assertTrue(this.circuitBreaker.tryAcquire(), "probe should be allowed once the open period has passed");
+    assertEquals(CircuitBreaker.State.HalfOpen, this.circuitBreaker.state());
+    assertFalse(this.circuitBreaker.tryAcquire(), "only one probe should be in flight");
+    this.circuitBreaker.onSuccess();
+    assertEquals(CircuitBreaker.State.Closed, this.circuitBreaker.state());
+    assertTrue(this.circuitBreaker.tryAcquire());
+  }
+
+  @Test
+  public void halfOpenProbeFails() {
+    fail(3);
+    this.time.sleep(10000L);
+    assertTrue(this.circuitBreaker.tryAcquire());
+    this.circuitBreaker.onFailure();
+    assertEquals(CircuitBreaker.State.Open, this.circuitBreaker.state());
+    this.time.sleep(9999L);
+    assertFalse(this.circuitBreaker.tryAcquire());
+    this.time.sleep(1L);
+    assertTrue(this.circuitBreaker.tryAcquire());
+  }
+
+  @Test
+  public void halfOpenProbeReleased() {
+    fail(3);
+    this.time.sleep(4000L);
+    assertEquals(6000L, this.circuitBreaker.retryInMs());
+    this.time.sleep(6000L);
+    assertTrue(this.circuitBreaker.tryAcquire());
+    this.circuitBreaker.release();
+    assertEquals(CircuitBreaker.State.Open, this.circuitBreaker.state(), "a request that did not reach Vault should not close the breaker");
+    assertTrue(this.circuitBreaker.tryAcquire(), "the next request should be the probe");
+    assertEquals(CircuitBreaker.State.HalfOpen, this.circuitBreaker.state());
+  }
+
+  @Test
+  public void transportReleasesProbeWhenRequestThrows() {
+    CircuitBreakerTransport transport = new CircuitBreakerTransport(mock(VaultTransport.class), this.circuitBreaker);
+    fail(3);
+    CompletionException exception = assertThrows(CompletionException.class, () -> transport.execute(CompletableFuture::new).join());
+    assertEquals("Circuit breaker is open because Vault requests are failing. Retrying in 10000 ms.", exception.getCause().getMessage());
+    this.time.sleep(10000L);
+    assertThrows(IllegalStateException.class, () -> transport.execute(() -> {
+      throw new IllegalStateException("executor was shut down");
+    }));
+    assertEquals(CircuitBreaker.State.Open, this.circuitBreaker.state());
+  }
+}
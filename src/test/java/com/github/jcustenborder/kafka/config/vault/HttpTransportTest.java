@@ -0,0 +1,233 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.VaultConfig;
+import com.bettercloud.vault.VaultException;
+import com.bettercloud.vault.json.Json;
+import com.bettercloud.vault.response.LogicalResponse;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.kafka.common.utils.Time;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class HttpTransportTest {
+  HttpServer server;
+  List<HttpExchange> exchanges;
+  Set<Integer> remotePorts;
+  AtomicInteger failures;
+  HttpTransport transport;
+  ExecutorService executor;
+  ScheduledExecutorService timer;
+  VaultMetrics metrics;
+
+  @BeforeEach
+  public void before() throws Exception {
+    this.exchanges = new CopyOnWriteArrayList<>();
+    this.remotePorts = ConcurrentHashMap.newKeySet();
+    this.failures = new AtomicInteger();
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    this.server.createContext("/v1/", exchange -> {
+      this.exchanges.add(exchange);
+      this.remotePorts.add(exchange.getRemoteAddress().getPort());
+      String path = exchange.getRequestURI().getPath();
+      if (path.equals("/v1/secret/data/app")) {
+        respond(exchange, 200, Json.object()
+            .add("lease_duration", 0)
+            .add("data", Json.object()
+                .add("data", Json.object().add("password", "secret"))
+                .add("metadata", Json.object().add("version", 3))
+            ).toString());
+      } else if (path.equals("/v1/legacy/app")) {
+        respond(exchange, 200, Json.object()
+            .add("lease_duration", 0)
+            .add("data", Json.object().add("password", "legacy"))
+            .toString());
+      } else if (path.equals("/v1/secret/metadata/apps") && "list=true".equals(exchange.getRequestURI().getQuery())) {
+        respond(exchange, 200, Json.object()
+            .add("data", Json.object().add("keys", Json.array("app", "nested/")))
+            .toString());
+      } else if (path.equals("/v1/secret/data/malformed")) {
+        respond(exchange, 200, "{\"data\":{\"data\":{\"password\":");
+      } else if (path.equals("/v1/secret/data/throttled") && this.failures.getAndIncrement() < 1) {
+        respond(exchange, 429, "{\"errors\":[\"rate limit quota exceeded\"]}");
+      } else if (path.equals("/v1/secret/data/throttled")) {
+        respond(exchange, 200, Json.object()
+            .add("data", Json.object().add("data", Json.object().add("password", "throttled")))
+            .toString());
+      } else if (path.equals("/v1/secret/data/unavailable") && this.failures.getAndIncrement() < 2) {
+        respond(exchange, 503, "{\"errors\":[\"unavailable\"]}");
+      } else if (path.equals("/v1/secret/data/unavailable")) {
+        respond(exchange, 200, Json.object()
+            .add("data", Json.object().add("data", Json.object().add("password", "recovered")))
+            .toString());
+      } else {
+        respond(exchange, 404, "{\"errors\":[]}");
+      }
+    });
+    this.server.start();
+    VaultConfig vaultConfig = new VaultConfig()
+        .address(String.format("http://%s:%s", this.server.getAddress().getHostString(), this.server.getAddress().getPort()))
+        .token("token")
+        .nameSpace("team")
+        .build();
+    this.executor = Executors.newFixedThreadPool(4);
+    this.timer = Executors.newSingleThreadScheduledExecutor();
+    this.metrics = new VaultMetrics(Time.SYSTEM);
+    Retrier retrier = new Retrier(this.timer, 2, 10L, 10L, 10000L, new RetryBudget(10, 0, Time.SYSTEM), null, this.metrics, Time.SYSTEM);
+    this.transport = new HttpTransport(vaultConfig, 4, 5000, 5000, this.executor, retrier, this.metrics);
+  }
+
+  @AfterEach
+  public void after() {
+    this.transport.close();
+    this.executor.shutdownNow();
+    this.timer.shutdownNow();
+    this.metrics.close();
+    this.server.stop(0);
+  }
+
+  LogicalResponse read(String path, int engineVersion, Integer version) throws VaultException {
+    try {
+      return this.transport.read(path, engineVersion, version).join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof VaultException) {
+        throw (VaultException) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  static void respond(HttpExchange exchange, int status, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(bytes);
+    }
+  }
+
+  @Test
+  public void readV2() throws VaultException {
+    LogicalResponse response = read("secret/app", 2, null);
+    assertEquals(200, response.getRestResponse().getStatus());
+    assertEquals(ImmutableMap.of("password", "secret"), response.getData());
+    assertEquals(Integer.valueOf(3), KeyValueV2.version(response));
+    HttpExchange exchange = this.exchanges.get(0);
+    assertEquals("token", exchange.getRequestHeaders().getFirst("X-Vault-Token"));
+    assertEquals("team", exchange.getRequestHeaders().getFirst("X-Vault-Namespace"));
+  }
+
+  @Test
+  public void readSecret() {
+    Secret secret = this.transport.readSecret("secret/app", 2, null, ImmutableSet.of("password", "username")).join();
+    assertEquals(200, secret.status);
+    assertEquals(ImmutableMap.of("password", "secret"), secret.data);
+    assertEquals(Integer.valueOf(3), secret.version());
+    assertEquals(404, this.transport.readSecret("secret/missing", 2, null, ImmutableSet.of()).join().status);
+  }
+
+  @Test
+  public void malformedIsNotRetried() {
+    CompletionException exception = assertThrows(
+        CompletionException.class,
+        () -> this.transport.readSecret("secret/malformed", 2, null, ImmutableSet.of()).join()
+    );
+    VaultException cause = (VaultException) exception.getCause();
+    assertEquals(200, cause.getHttpStatusCode());
+    assertEquals(1, this.exchanges.size(), "a response that is not valid JSON should not be retried");
+  }
+
+  @Test
+  public void list() {
+    LogicalResponse response = this.transport.list("secret/apps", 2).join();
+    assertEquals(200, response.getRestResponse().getStatus());
+    assertEquals(ImmutableList.of("app", "nested/"), response.getListData());
+  }
+
+  @Test
+  public void readVersion() throws VaultException {
+    read("secret/app", 2, 3);
+    assertEquals("version=3", this.exchanges.get(0).getRequestURI().getQuery());
+  }
+
+  @Test
+  public void readV1() throws VaultException {
+    LogicalResponse response = read("legacy/app", 1, null);
+    assertEquals(ImmutableMap.of("password", "legacy"), response.getData());
+  }
+
+  @Test
+  public void notFoundIsReturned() throws VaultException {
+    LogicalResponse response = read("secret/missing", 2, null);
+    assertEquals(404, response.getRestResponse().getStatus());
+    assertEquals(1, this.exchanges.size(), "4xx responses should not be retried");
+  }
+
+  @Test
+  public void serverErrorsAreRetried() throws VaultException {
+    LogicalResponse response = read("secret/unavailable", 2, null);
+    assertEquals(ImmutableMap.of("password", "recovered"), response.getData());
+    assertEquals(3, this.exchanges.size());
+  }
+
+  @Test
+  public void throttledIsRetried() throws VaultException {
+    LogicalResponse response = read("secret/throttled", 2, null);
+    assertEquals(ImmutableMap.of("password", "throttled"), response.getData());
+    assertEquals(2, this.exchanges.size());
+  }
+
+  @Test
+  public void retriesExhausted() {
+    this.failures.set(-10);
+    VaultException exception = assertThrows(VaultException.class, () -> read("secret/unavailable", 2, null));
+    assertEquals(503, exception.getHttpStatusCode());
+    assertEquals(3, this.exchanges.size());
+  }
+
+  @Test
+  public void connectionsAreReused() throws VaultException {
+    for (int i = 0; i < 10; i++) {
+      read("secret/app", 2, null);
+    }
+    assertEquals(10, this.exchanges.size());
+    assertEquals(1, this.remotePorts.size(), "all requests should use the same connection");
+  }
+}
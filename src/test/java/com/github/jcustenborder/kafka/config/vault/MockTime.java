@@ -0,0 +1,46 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import org.apache.kafka.common.utils.Time;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+class MockTime implements Time {
+  private final AtomicLong nanos = new AtomicLong(TimeUnit.MILLISECONDS.toNanos(1_000_000L));
+
+  @Override
+  public long milliseconds() {
+    return TimeUnit.NANOSECONDS.toMillis(this.nanos.get());
+  }
+
+  @Override
+  public long nanoseconds() {
+    return this.nanos.get();
+  }
+
+  @Override
+  public void sleep(long ms) {
+    this.nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(ms));
+  }
+
+  @Override
+  public void waitObject(Object obj, Supplier<Boolean> condition, long timeoutMs) throws InterruptedException {
+    throw new UnsupportedOperationException();
+  }
+}
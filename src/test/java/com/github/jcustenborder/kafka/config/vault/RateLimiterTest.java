@@ -0,0 +1,56 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Max;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RateLimiterTest {
+
+  @Test
+  public void requestsAreSpacedEvenly() {
+    MockTime time = new MockTime();
+    RateLimiter rateLimiter = new RateLimiter(4, time, null);
+    assertEquals(0L, rateLimiter.reserve());
+    assertEquals(250L, rateLimiter.reserve());
+    assertEquals(500L, rateLimiter.reserve());
+    time.sleep(100L);
+    assertEquals(650L, rateLimiter.reserve());
+    time.sleep(10000L);
+    assertEquals(0L, rateLimiter.reserve(), "unused capacity should not accumulate into a burst");
+    assertEquals(250L, rateLimiter.reserve());
+  }
+
+  @Test
+  public void waitTimeIsRecorded() {
+    MockTime time = new MockTime();
+    try (Metrics metrics = new Metrics(time)) {
+      Sensor sensor = metrics.sensor("wait");
+      MetricName max = metrics.metricName("wait-max", "test");
+      sensor.add(max, new Max());
+      RateLimiter rateLimiter = new RateLimiter(10, time, sensor);
+      rateLimiter.reserve();
+      rateLimiter.reserve();
+      rateLimiter.reserve();
+      assertEquals(200D, (double) metrics.metric(max).metricValue(), 0.0001D);
+    }
+  }
+}
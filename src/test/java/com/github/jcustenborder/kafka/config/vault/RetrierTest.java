@@ -0,0 +1,193 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.VaultException;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.utils.Time;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RetrierTest {
+  MockTime time;
+  ScheduledExecutorService timer;
+  VaultMetrics metrics;
+
+  @BeforeEach
+  public void before() {
+    this.time = new MockTime();
+    this.timer = Executors.newSingleThreadScheduledExecutor();
+    this.metrics = new VaultMetrics(this.time);
+  }
+
+  @AfterEach
+  public void after() {
+    this.timer.shutdownNow();
+    this.metrics.close();
+  }
+
+  Retrier retrier(int maxRetries, long maxElapsedMs, RetryBudget budget) {
+    return new Retrier(this.timer, maxRetries, 1L, 5L, maxElapsedMs, budget, null, this.metrics, this.time);
+  }
+
+  static <T> Throwable failure(CompletableFuture<T> future) {
+    ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get(30, TimeUnit.SECONDS));
+    return ex.getCause();
+  }
+
+  @Test
+  public void transientFailuresAreRetried() throws Exception {
+    AtomicInteger attempts = new AtomicInteger();
+    CompletableFuture<String> future = retrier(5, 10000L, new RetryBudget(10, 0, this.time))
+        .execute("test", Runnable::run, retryCount -> {
+          final int attempt = attempts.getAndIncrement();
+          if (0 == attempt) {
+            throw new VaultException("unavailable", 503);
+          } else if (1 == attempt) {
+            throw new VaultException("throttled", 429);
+          } else if (2 == attempt) {
+            throw new VaultException(new IOException("connection reset"));
+          }
+          return "value";
+        });
+    assertEquals("value", future.get(30, TimeUnit.SECONDS));
+    assertEquals(4, attempts.get());
+  }
+
+  @Test
+  public void clientErrorsAreNotRetried() {
+    for (int status : new int[]{400, 403, 404}) {
+      AtomicInteger attempts = new AtomicInteger();
+      final VaultException expected = new VaultException("client error", status);
+      CompletableFuture<String> future = retrier(5, 10000L, new RetryBudget(10, 0, this.time))
+          .execute("test", Runnable::run, retryCount -> {
+            attempts.incrementAndGet();
+            throw expected;
+          });
+      assertSame(expected, failure(future));
+      assertEquals(1, attempts.get(), "status " + status + " should not be retried");
+    }
+  }
+
+  @Test
+  public void maxRetries() {
+    AtomicInteger attempts = new AtomicInteger();
+    CompletableFuture<String> future = retrier(2, 10000L, new RetryBudget(10, 0, this.time))
+        .execute("test", Runnable::run, retryCount -> {
+          attempts.incrementAndGet();
+          throw new VaultException("unavailable", 503);
+        });
+    assertTrue(failure(future) instanceof VaultException);
+    assertEquals(3, attempts.get());
+    MetricName retries = this.metrics.metrics.metricName(
+        "retries-total",
+        VaultMetrics.GROUP,
+        this.metrics.tags(VaultMetrics.PATH_PREFIX_TAG, "test")
+    );
+    assertEquals(2D, (double) this.metrics.metrics.metric(retries).metricValue(), 0.0001D);
+  }
+
+  @Test
+  public void maxElapsed() {
+    AtomicInteger attempts = new AtomicInteger();
+    CompletableFuture<String> future = retrier(100, 1000L, new RetryBudget(100, 0, this.time))
+        .execute("test", Runnable::run, retryCount -> {
+          attempts.incrementAndGet();
+          this.time.sleep(400L);
+          throw new VaultException("unavailable", 503);
+        });
+    assertTrue(failure(future) instanceof VaultException);
+    assertEquals(3, attempts.get());
+  }
+
+  @Test
+  public void budgetIsShared() {
+    RetryBudget budget = new RetryBudget(3, 0, this.time);
+    Retrier retrier = retrier(100, 10000L, budget);
+    AtomicInteger attempts = new AtomicInteger();
+    for (int i = 0; i < 2; i++) {
+      CompletableFuture<String> future = retrier.execute("test", Runnable::run, retryCount -> {
+        attempts.incrementAndGet();
+        throw new VaultException("unavailable", 503);
+      });
+      assertTrue(failure(future) instanceof VaultException);
+    }
+    assertEquals(5, attempts.get(), "3 retries from the budget plus the 2 initial attempts");
+  }
+
+  @Test
+  public void budgetRefills() {
+    RetryBudget budget = new RetryBudget(2, 1, this.time);
+    assertTrue(budget.tryAcquire());
+    assertTrue(budget.tryAcquire());
+    assertFalse(budget.tryAcquire());
+    this.time.sleep(1000L);
+    assertTrue(budget.tryAcquire());
+    assertFalse(budget.tryAcquire());
+    this.time.sleep(60000L);
+    assertTrue(budget.tryAcquire());
+    assertTrue(budget.tryAcquire());
+    assertFalse(budget.tryAcquire(), "tokens should not exceed the capacity");
+  }
+
+  @Test
+  public void delay() {
+    Retrier retrier = new Retrier(this.timer, 10, 100L, 1000L, 10000L, new RetryBudget(10, 0, this.time), null, this.metrics, this.time);
+    assertEquals(0L, retrier.delay(1, 0D));
+    assertEquals(99L, retrier.delay(1, 0.999D));
+    assertEquals(399L, retrier.delay(3, 0.999D));
+    assertEquals(999L, retrier.delay(5, 0.999D));
+    assertEquals(999L, retrier.delay(64, 0.999D));
+  }
+
+  @Test
+  public void rateLimited() throws Exception {
+    RateLimiter rateLimiter = new RateLimiter(50, Time.SYSTEM, null);
+    Retrier retrier = new Retrier(this.timer, 0, 1L, 5L, 10000L, new RetryBudget(10, 0, this.time), rateLimiter, this.metrics, this.time);
+    List<Long> sent = new CopyOnWriteArrayList<>();
+    List<CompletableFuture<Integer>> futures = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      final int request = i;
+      futures.add(retrier.execute("test", Runnable::run, retryCount -> {
+        sent.add(System.nanoTime());
+        return request;
+      }));
+    }
+    for (int i = 0; i < futures.size(); i++) {
+      assertEquals(i, futures.get(i).get(30, TimeUnit.SECONDS));
+    }
+    final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(sent.get(4) - sent.get(0));
+    assertTrue(elapsedMs >= 75L, "5 requests at 50 per second should take about 80 ms. Took " + elapsedMs);
+  }
+}
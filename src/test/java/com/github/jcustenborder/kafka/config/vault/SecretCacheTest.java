@@ -0,0 +1,128 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.apache.kafka.common.config.ConfigException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SecretCacheTest {
+  MockTime time;
+  SecretCache cache;
+
+  @BeforeEach
+  public void before() {
+    this.time = new MockTime();
+    this.cache = new SecretCache(2, this.time);
+  }
+
+  @Test
+  public void hitAndMiss() {
+    SecretCache.Key key = new SecretCache.Key("", "", "secret/test");
+    assertNull(this.cache.get(key));
+    this.cache.put(key, ImmutableMap.of("username", "user"), 5000L);
+    SecretCache.Entry entry = this.cache.get(key);
+    assertNotNull(entry);
+    assertEquals(ImmutableMap.of("username", "user"), entry.data);
+    assertEquals(1L, this.cache.hits());
+    assertEquals(1L, this.cache.misses());
+  }
+
+  @Test
+  public void expired() {
+    SecretCache.Key key = new SecretCache.Key("", "", "secret/test");
+    this.cache.put(key, ImmutableMap.of("username", "user"), 5000L);
+    this.time.sleep(4000L);
+    SecretCache.Entry entry = this.cache.get(key);
+    assertNotNull(entry);
+    assertEquals(1000L, entry.ttl(this.time.milliseconds()));
+    this.time.sleep(1000L);
+    assertNull(this.cache.get(key));
+    assertNotNull(this.cache.peek(key), "expired entries are retained for revalidation");
+  }
+
+  @Test
+  public void keyIncludesNamespaceAndPrefix() {
+    this.cache.put(new SecretCache.Key("", "staging/", "secret/test"), ImmutableMap.of("username", "user"), 5000L);
+    assertNull(this.cache.get(new SecretCache.Key("", "production/", "secret/test")));
+    assertNull(this.cache.get(new SecretCache.Key("team", "staging/", "secret/test")));
+    assertNotNull(this.cache.get(new SecretCache.Key("", "staging/", "secret/test")));
+  }
+
+  @Test
+  public void evictions() {
+    for (int i = 0; i < 5; i++) {
+      this.cache.put(new SecretCache.Key("", "", "secret/test" + i), ImmutableMap.of("username", "user"), 5000L);
+    }
+    assertEquals(2L, this.cache.size());
+    assertEquals(3L, this.cache.evictions());
+  }
+
+  @Test
+  public void jsonPointer() {
+    SecretCache.Entry entry = this.cache.put(
+        new SecretCache.Key("", "", "secret/db"),
+        ImmutableMap.of(
+            "config", "{\"credentials\":{\"username\":\"app\",\"password\":\"secret\"}," +
+                "\"hosts\":[\"a\",{\"port\":5432}],\"a/b\":{\"c~d\":\"escaped\"},\"empty\":null}",
+            "text", "not json",
+            "literal#/key", "literal"
+        ),
+        5000L
+    );
+    assertEquals("secret", entry.value("config#/credentials/password"));
+    assertEquals("app", entry.value("config#/credentials/username"));
+    assertEquals(1, entry.documents.size(), "sibling fields should share the parsed document");
+    assertEquals("{\"username\":\"app\",\"password\":\"secret\"}", entry.value("config#/credentials"));
+    assertEquals("a", entry.value("config#/hosts/0"));
+    assertEquals("5432", entry.value("config#/hosts/1/port"));
+    assertEquals("escaped", entry.value("config#/a~1b/c~0d"));
+    assertNull(entry.value("config#/hosts/2"));
+    assertNull(entry.value("config#/hosts/01"));
+    assertNull(entry.value("config#/credentials/missing"));
+    assertNull(entry.value("config#/empty"));
+    assertNull(entry.value("missing#/field"));
+    assertEquals("literal", entry.value("literal#/key"));
+    assertThrows(ConfigException.class, () -> entry.value("text#/field"));
+  }
+
+  @Test
+  public void project() {
+    Map<String, String> data = new HashMap<>();
+    data.put("username", "user");
+    data.put("password", "secret");
+    data.put("empty", null);
+    SecretCache.Entry entry = new SecretCache.Entry(data, 0L, 60000L);
+    assertEquals(entry.data, entry.project(Collections.emptySet()));
+    assertEquals(ImmutableMap.of("username", "user"), entry.project(ImmutableSet.of("username", "missing")));
+    assertEquals(Collections.singletonMap("empty", null), entry.project(ImmutableSet.of("empty")));
+    Map<String, String> expected = new HashMap<>();
+    expected.put("password", "secret");
+    expected.put("empty", null);
+    assertEquals(expected, entry.project(ImmutableSet.of("password", "empty", "missing")));
+  }
+}
@@ -0,0 +1,155 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.api.Logical;
+import com.bettercloud.vault.json.Json;
+import com.bettercloud.vault.json.JsonObject;
+import com.bettercloud.vault.response.LogicalResponse;
+import com.bettercloud.vault.rest.RestResponse;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SecretParserTest {
+  static final JsonObject DATA = Json.object()
+      .add("username", "app")
+      .add("password", "päss \"quoted\"\\\n\t☃ 🔑")
+      .add("port", 5432)
+      .add("enabled", true)
+      .add("missing", Json.NULL)
+      .add("config", Json.object()
+          .add("hosts", Json.array("a", "b"))
+          .add("timeout", 1.5));
+
+  static String v1(JsonObject data) {
+    return Json.object()
+        .add("request_id", "1234")
+        .add("lease_id", "")
+        .add("lease_duration", 300)
+        .add("renewable", false)
+        .add("data", data)
+        .add("warnings", Json.NULL)
+        .toString();
+  }
+
+  static String v2(JsonObject data, int version) {
+    return Json.object()
+        .add("request_id", "1234")
+        .add("lease_id", "")
+        .add("renewable", false)
+        .add("lease_duration", 0)
+        .add("data", Json.object()
+            .add("data", data)
+            .add("metadata", Json.object()
+                .add("created_time", "2021-01-01T00:00:00Z")
+                .add("deletion_time", "")
+                .add("destroyed", false)
+                .add("version", version)))
+        .toString();
+  }
+
+  static Secret parse(String body, int engineVersion, Set<String> keys) throws IOException {
+    return SecretParser.parse(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), engineVersion, keys);
+  }
+
+  static LogicalResponse driver(String body, int engineVersion) {
+    RestResponse restResponse = new RestResponse(200, "application/json", body.getBytes(StandardCharsets.UTF_8));
+    return new LogicalResponse(
+        restResponse,
+        0,
+        2 == engineVersion ? Logical.logicalOperations.readV2 : Logical.logicalOperations.readV1
+    );
+  }
+
+  @Test
+  public void matchesDriverV1() throws IOException {
+    final String body = v1(DATA);
+    Secret secret = parse(body, 1, Collections.emptySet());
+    LogicalResponse expected = driver(body, 1);
+    assertEquals(200, secret.status);
+    assertEquals(expected.getData(), secret.data);
+    assertEquals(expected.getLeaseDuration(), secret.leaseDuration);
+    assertNull(secret.version());
+  }
+
+  @Test
+  public void matchesDriverV2() throws IOException {
+    final String body = v2(DATA, 7);
+    Secret secret = parse(body, 2, Collections.emptySet());
+    LogicalResponse expected = driver(body, 2);
+    assertEquals(expected.getData(), secret.data);
+    assertEquals(expected.getLeaseDuration(), secret.leaseDuration);
+    assertEquals(Integer.valueOf(7), secret.version());
+  }
+
+  @Test
+  public void projection() throws IOException {
+    Secret secret = parse(v2(DATA, 1), 2, ImmutableSet.of("password", "config", "unknown"));
+    assertEquals(
+        ImmutableMap.of(
+            "password", DATA.get("password").asString(),
+            "config", DATA.get("config").toString()
+        ),
+        secret.data
+    );
+  }
+
+  @Test
+  public void projectionOfManyKeys() throws IOException {
+    JsonObject data = Json.object();
+    IntStream.range(0, 100).forEach(i -> data.add("key" + i, "value" + i));
+    Set<String> keys = IntStream.range(0, 20)
+        .mapToObj(i -> "key" + (i * 5))
+        .collect(Collectors.toSet());
+    Secret secret = parse(v1(data), 1, keys);
+    assertEquals(keys, secret.data.keySet());
+    assertEquals("value95", secret.data.get("key95"));
+  }
+
+  @Test
+  public void version() throws IOException {
+    assertEquals(
+        Integer.valueOf(3),
+        SecretParser.version(new ByteArrayInputStream(v2(DATA, 3).getBytes(StandardCharsets.UTF_8)))
+    );
+  }
+
+  @Test
+  public void nullData() throws IOException {
+    Secret secret = parse("{\"lease_duration\":0,\"data\":null}", 1, Collections.emptySet());
+    assertEquals(Collections.emptyMap(), secret.data);
+  }
+
+  @Test
+  public void invalid() {
+    assertThrows(SecretParser.MalformedResponseException.class, () -> parse("{\"data\":{\"password\":\"secret\"", 1, Collections.emptySet()));
+    assertThrows(SecretParser.MalformedResponseException.class, () -> parse("<html></html>", 1, Collections.emptySet()));
+    assertThrows(SecretParser.MalformedResponseException.class, () -> parse("{\"data\":{\"port\":tru}}", 1, Collections.emptySet()));
+  }
+}
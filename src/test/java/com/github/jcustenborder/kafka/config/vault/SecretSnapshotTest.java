@@ -0,0 +1,114 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.AEADBadTagException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SecretSnapshotTest {
+  @TempDir
+  Path directory;
+  MockTime time;
+  Path path;
+
+  @BeforeEach
+  public void before() {
+    this.time = new MockTime();
+    this.path = this.directory.resolve("vault.snapshot");
+  }
+
+  SecretSnapshot snapshot(String password) {
+    return snapshot(password, "identity");
+  }
+
+  SecretSnapshot snapshot(String password, String identity) {
+    return new SecretSnapshot(this.path, password.toCharArray(), identity.getBytes(StandardCharsets.UTF_8), 60000L, this.time);
+  }
+
+  static Map<SecretCache.Key, SecretCache.Entry> entries(long createdMs) {
+    Map<SecretCache.Key, SecretCache.Entry> result = new LinkedHashMap<>();
+    result.put(
+        new SecretCache.Key("", "", "secret/first"),
+        new SecretCache.Entry(ImmutableMap.of("username", "user", "password", "pässword"), 3, createdMs, createdMs + 1000L, false, false)
+    );
+    result.put(
+        new SecretCache.Key("team", "prefix", "secret/second"),
+        new SecretCache.Entry(ImmutableMap.of("token", "abc"), createdMs, createdMs + 1000L)
+    );
+    result.put(
+        new SecretCache.Key("", "", "secret/pinned?version=2"),
+        new SecretCache.Entry(ImmutableMap.of("token", "def"), 2, createdMs, SecretCache.NEVER_EXPIRES, false, false)
+    );
+    return result;
+  }
+
+  @Test
+  public void roundTrip() throws Exception {
+    Map<SecretCache.Key, SecretCache.Entry> expected = entries(this.time.milliseconds());
+    snapshot("password").write(expected);
+    assertTrue(Files.exists(this.path));
+    String contents = new String(Files.readAllBytes(this.path), StandardCharsets.ISO_8859_1);
+    assertFalse(contents.contains("username"), "snapshot should be encrypted");
+
+    Map<SecretCache.Key, SecretCache.Entry> actual = snapshot("password").read();
+    assertEquals(expected.keySet(), actual.keySet());
+    expected.forEach((key, entry) -> {
+      SecretCache.Entry restored = actual.get(key);
+      assertEquals(entry.data, restored.data);
+      assertEquals(entry.version, restored.version);
+      assertEquals(entry.createdMs, restored.createdMs);
+      assertEquals(entry.isImmutable(), restored.isImmutable());
+    });
+  }
+
+  @Test
+  public void differentIdentity() throws Exception {
+    snapshot("password", "first").write(entries(this.time.milliseconds()));
+    assertTrue(snapshot("password", "second").read().isEmpty());
+  }
+
+  @Test
+  public void wrongPassword() throws Exception {
+    snapshot("password").write(entries(this.time.milliseconds()));
+    assertThrows(AEADBadTagException.class, () -> snapshot("incorrect").read());
+  }
+
+  @Test
+  public void missing() throws Exception {
+    assertTrue(snapshot("password").read().isEmpty());
+  }
+
+  @Test
+  public void maxAge() throws Exception {
+    snapshot("password").write(entries(this.time.milliseconds()));
+    this.time.sleep(60001L);
+    assertTrue(snapshot("password").read().isEmpty());
+  }
+}
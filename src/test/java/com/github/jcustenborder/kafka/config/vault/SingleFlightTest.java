@@ -0,0 +1,84 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import org.apache.kafka.common.config.ConfigException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SingleFlightTest {
+
+  @Test
+  public void concurrentCallersShareResult() throws Exception {
+    final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    final AtomicInteger loads = new AtomicInteger();
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final int threads = 8;
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<String>> futures = new ArrayList<>();
+      futures.add(executorService.submit(() -> singleFlight.execute("secret/test", () -> {
+        loads.incrementAndGet();
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new IllegalStateException(e);
+        }
+        return "value";
+      })));
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      for (int i = 1; i < threads; i++) {
+        futures.add(executorService.submit(() -> singleFlight.execute("secret/test", () -> {
+          loads.incrementAndGet();
+          return "other";
+        })));
+      }
+      Thread.sleep(100);
+      release.countDown();
+      for (Future<String> future : futures) {
+        assertEquals("value", future.get(10, TimeUnit.SECONDS));
+      }
+      assertEquals(1, loads.get());
+      assertEquals(0, singleFlight.size());
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  @Test
+  public void exceptionIsNotCached() {
+    final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    assertThrows(ConfigException.class, () -> singleFlight.execute("secret/test", () -> {
+      throw new ConfigException("failed");
+    }));
+    assertEquals(0, singleFlight.size());
+    assertEquals("value", singleFlight.execute("secret/test", () -> "value"));
+  }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.apache.kafka.common.config.ConfigChangeCallback;
+import org.apache.kafka.common.config.ConfigData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SubscriptionManagerTest {
+  static final String PATH = "secret/subscribe";
+  MockTime time;
+  AtomicReference<String> password;
+  CountDownLatch loading;
+  CountDownLatch proceed;
+  SubscriptionManager subscriptionManager;
+
+  @BeforeEach
+  public void before() {
+    this.time = new MockTime();
+    this.password = new AtomicReference<>("first");
+    this.subscriptionManager = new SubscriptionManager(path -> {
+      SecretCache.Entry entry = new SecretCache.Entry(ImmutableMap.of("password", this.password.get()), 0L, 60000L);
+      if ("poll".equals(Thread.currentThread().getName())) {
+        this.loading.countDown();
+        try {
+          this.proceed.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return entry;
+    }, TimeUnit.HOURS.toMillis(1), this.time);
+  }
+
+  @AfterEach
+  public void after() {
+    this.subscriptionManager.close();
+  }
+
+  static ConfigChangeCallback callback(List<ConfigData> changes) {
+    return (path, data) -> changes.add(data);
+  }
+
+  @Test
+  public void subscribeDuringPoll() throws Exception {
+    final List<ConfigData> firstChanges = new CopyOnWriteArrayList<>();
+    final List<ConfigData> secondChanges = new CopyOnWriteArrayList<>();
+    this.loading = new CountDownLatch(1);
+    this.proceed = new CountDownLatch(1);
+    this.subscriptionManager.subscribe(PATH, ImmutableSet.of("password"), callback(firstChanges));
+
+    // The poll reads the first value and is then held until the second subscriber has subscribed.
+    Thread poll = new Thread(this.subscriptionManager::poll, "poll");
+    poll.start();
+    assertTrue(this.loading.await(30, TimeUnit.SECONDS));
+    this.password.set("second");
+    Thread subscribe = new Thread(() -> this.subscriptionManager.subscribe(PATH, ImmutableSet.of("password"), callback(secondChanges)));
+    subscribe.start();
+    subscribe.join(10000L);
+    assertFalse(subscribe.isAlive(), "subscribe should not wait for a poll that is in progress");
+    this.proceed.countDown();
+    poll.join(30000L);
+    assertTrue(firstChanges.isEmpty());
+    assertTrue(secondChanges.isEmpty(), "the subscriber should not be notified of a value older than the one it subscribed to");
+
+    this.loading = new CountDownLatch(1);
+    this.subscriptionManager.poll();
+    assertEquals(1, firstChanges.size());
+    assertEquals(ImmutableMap.of("password", "second"), firstChanges.get(0).data());
+    assertTrue(secondChanges.isEmpty());
+  }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.VaultException;
+import org.apache.kafka.common.utils.Time;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenRenewalSchedulerTest {
+  final List<String> tokens = new ArrayList<>();
+  final AtomicInteger logins = new AtomicInteger();
+  TokenRenewalScheduler scheduler;
+
+  TokenRenewalScheduler scheduler(Callable<AuthHandlers.AuthConfig> renew, Callable<AuthHandlers.AuthConfig> login) {
+    return scheduler(renew, () -> {
+      this.logins.incrementAndGet();
+      return login.call();
+    }, Time.SYSTEM);
+  }
+
+  TokenRenewalScheduler scheduler(Callable<AuthHandlers.AuthConfig> renew, Callable<AuthHandlers.AuthConfig> login, Time time) {
+    this.scheduler = new TokenRenewalScheduler(
+        renew,
+        login,
+        this.tokens::add,
+        0.5D,
+        0.1D,
+        1000L,
+        Runnable::run,
+        time
+    );
+    return this.scheduler;
+  }
+
+  @AfterEach
+  public void after() {
+    if (null != this.scheduler) {
+      this.scheduler.close();
+    }
+  }
+
+  @Test
+  public void delay() {
+    TokenRenewalScheduler scheduler = scheduler(() -> null, () -> null);
+    for (int i = 0; i < 100; i++) {
+      long delay = scheduler.delay(60000L);
+      assertTrue(delay >= 27000L && delay <= 30000L, "delay should be between 27000 and 30000. delay = " + delay);
+    }
+  }
+
+  @Test
+  public void renewed() {
+    final AuthHandlers.AuthConfig renewed = new AuthHandlers.AuthConfig(null, true, 60000L);
+    TokenRenewalScheduler scheduler = scheduler(() -> renewed, () -> null);
+    assertSame(renewed, scheduler.renew(new AuthHandlers.AuthConfig(null, true, 60000L)));
+    assertEquals(0, this.logins.get());
+  }
+
+  @Test
+  public void renewFailed() {
+    final AuthHandlers.AuthConfig login = new AuthHandlers.AuthConfig("new-token", true, 60000L);
+    TokenRenewalScheduler scheduler = scheduler(() -> {
+      throw new VaultException("permission denied", 403);
+    }, () -> login);
+    assertSame(login, scheduler.renew(new AuthHandlers.AuthConfig(null, true, 60000L)));
+    assertEquals(1, this.logins.get());
+    assertEquals(1, this.tokens.size());
+    assertEquals("new-token", this.tokens.get(0));
+  }
+
+  @Test
+  public void maxTTL() {
+    final AuthHandlers.AuthConfig login = new AuthHandlers.AuthConfig("new-token", true, 60000L);
+    TokenRenewalScheduler scheduler = scheduler(() -> new AuthHandlers.AuthConfig(null, true, 5000L), () -> login);
+    assertSame(login, scheduler.renew(new AuthHandlers.AuthConfig(null, true, 60000L)));
+    assertEquals(1, this.logins.get());
+  }
+
+  @Test
+  public void notRenewable() {
+    final AuthHandlers.AuthConfig login = new AuthHandlers.AuthConfig("new-token", false, 60000L);
+    TokenRenewalScheduler scheduler = scheduler(() -> {
+      throw new IllegalStateException("renew should not be called");
+    }, () -> login);
+    assertSame(login, scheduler.renew(new AuthHandlers.AuthConfig(null, false, 60000L)));
+  }
+
+  @Test
+  public void loginFailed() {
+    TokenRenewalScheduler scheduler = scheduler(() -> {
+      throw new VaultException("permission denied", 403);
+    }, () -> {
+      throw new VaultException("permission denied", 403);
+    });
+    assertNull(scheduler.renew(new AuthHandlers.AuthConfig(null, true, 60000L)));
+    assertTrue(this.tokens.isEmpty());
+  }
+
+  @Test
+  public void staticTokenNotRenewable() {
+    final MockTime time = new MockTime();
+    TokenRenewalScheduler scheduler = scheduler(() -> {
+      throw new IllegalStateException("renew should not be called");
+    }, null, time);
+    scheduler.schedule(new AuthHandlers.AuthConfig(null, false, 60000L));
+    assertEquals(60000L, scheduler.expiresInMs());
+    time.sleep(45000L);
+    assertEquals(15000L, scheduler.expiresInMs());
+    time.sleep(30000L);
+    assertEquals(0L, scheduler.expiresInMs());
+    assertNull(scheduler.renew(new AuthHandlers.AuthConfig(null, false, 60000L)));
+    assertEquals(0L, scheduler.loginFailed());
+  }
+
+  @Test
+  public void staticTokenMaxTTL() {
+    TokenRenewalScheduler scheduler = scheduler(() -> new AuthHandlers.AuthConfig(null, true, 5000L), null, new MockTime());
+    AuthHandlers.AuthConfig result = scheduler.renew(new AuthHandlers.AuthConfig(null, true, 60000L));
+    assertFalse(result.isRenewable);
+    assertEquals(5000L, result.ttlMs);
+  }
+
+  @Test
+  public void staticTokenRenewFailed() {
+    TokenRenewalScheduler scheduler = scheduler(() -> {
+      throw new VaultException("permission denied", 403);
+    }, null, new MockTime());
+    assertNull(scheduler.renew(new AuthHandlers.AuthConfig(null, true, 60000L)));
+    assertEquals(1L, scheduler.renewFailed());
+    assertEquals(0L, scheduler.loginFailed());
+  }
+}
@@ -27,6 +27,7 @@ import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class VaultConfigProviderConfigTest {
@@ -94,6 +95,57 @@ public class VaultConfigProviderConfigTest {
     assertEquals(Constants.TOKEN, vaultConfig.getToken());
   }
 
+  @Test
+  public void kvMounts() {
+    Map<String, String> settings = new LinkedHashMap<>();
+    settings.put(VaultConfigProviderConfig.ADDRESS_CONFIG, "https://vault.example.com");
+    settings.put(VaultConfigProviderConfig.KV_MOUNTS_CONFIG, "secret:2, legacy:1, legacy/v2/:2");
+    VaultConfigProviderConfig config = new VaultConfigProviderConfig(settings);
+    assertEquals(2, config.kvVersion("secret/app"));
+    assertEquals(1, config.kvVersion("legacy/app"));
+    assertEquals(2, config.kvVersion("legacy/v2/app"));
+    assertEquals("legacy/v2", config.kvMount("legacy/v2/app"));
+    assertEquals(2, config.kvVersion("other/app"));
+    assertNull(config.kvMount("other/app"));
+    assertNull(config.kvMount("secrets/app"));
+
+    VaultConfig vaultConfig = config.createConfig();
+    assertEquals(2, vaultConfig.getGlobalEngineVersion());
+    assertEquals("1", vaultConfig.getSecretsEnginePathMap().get("legacy/"));
+    assertEquals("2", vaultConfig.getSecretsEnginePathMap().get("legacy/v2/"));
+  }
+
+  @Test
+  public void kvVersion() {
+    Map<String, String> settings = new LinkedHashMap<>();
+    settings.put(VaultConfigProviderConfig.ADDRESS_CONFIG, "https://vault.example.com");
+    settings.put(VaultConfigProviderConfig.KV_VERSION_CONFIG, "1");
+    VaultConfigProviderConfig config = new VaultConfigProviderConfig(settings);
+    assertEquals(1, config.kvVersion("secret/app"));
+    assertEquals(1, config.createConfig().getGlobalEngineVersion());
+  }
+
+  @Test
+  public void kvMountsInvalid() {
+    Map<String, String> settings = new LinkedHashMap<>();
+    settings.put(VaultConfigProviderConfig.KV_MOUNTS_CONFIG, "secret:3");
+    assertThrows(ConfigException.class, () -> new VaultConfigProviderConfig(settings));
+    settings.put(VaultConfigProviderConfig.KV_MOUNTS_CONFIG, "secret");
+    assertThrows(ConfigException.class, () -> new VaultConfigProviderConfig(settings));
+  }
+
+  @Test
+  public void retryIntervalSetsInitialBackoff() {
+    Map<String, String> settings = new LinkedHashMap<>();
+    settings.put(VaultConfigProviderConfig.ADDRESS_CONFIG, "https://vault.example.com");
+    settings.put(VaultConfigProviderConfig.TOKEN_CONFIG, "token");
+    assertEquals(100L, new VaultConfigProviderConfig(settings).retryBackoffInitialMs);
+    settings.put(VaultConfigProviderConfig.MAX_RETRY_INTERVAL_CONFIG, "500");
+    assertEquals(500L, new VaultConfigProviderConfig(settings).retryBackoffInitialMs);
+    settings.put(VaultConfigProviderConfig.RETRY_BACKOFF_INITIAL_MS_CONFIG, "50");
+    assertEquals(50L, new VaultConfigProviderConfig(settings).retryBackoffInitialMs);
+  }
+
   static class MockEnvironment extends EnvironmentLoader {
     private final Map<String, String> values;
 
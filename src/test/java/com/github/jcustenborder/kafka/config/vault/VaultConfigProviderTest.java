@@ -0,0 +1,985 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import com.bettercloud.vault.Vault;
+import com.bettercloud.vault.VaultConfig;
+import com.bettercloud.vault.VaultException;
+import com.bettercloud.vault.api.Auth;
+import com.bettercloud.vault.api.Logical;
+import com.bettercloud.vault.json.Json;
+import com.bettercloud.vault.json.JsonObject;
+import com.bettercloud.vault.response.LogicalResponse;
+import com.bettercloud.vault.response.LookupResponse;
+import com.bettercloud.vault.rest.RestResponse;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.config.ConfigChangeCallback;
+import org.apache.kafka.common.config.ConfigData;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.metrics.KafkaMetric;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class VaultConfigProviderTest {
+  MockTime time;
+  Vault vault;
+  Logical logical;
+  Map<String, String> settings;
+
+  @BeforeEach
+  public void before() throws VaultException {
+    this.time = new MockTime();
+    this.vault = mock(Vault.class);
+    this.logical = mock(Logical.class);
+    Auth auth = mock(Auth.class);
+    when(this.vault.withRetries(anyInt(), anyInt())).thenReturn(this.vault);
+    when(this.vault.logical()).thenReturn(this.logical);
+    when(this.vault.auth()).thenReturn(auth);
+    when(auth.lookupSelf()).thenReturn(mock(LookupResponse.class));
+    this.settings = new LinkedHashMap<>();
+    this.settings.put(VaultConfigProviderConfig.ADDRESS_CONFIG, "https://vault.example.com");
+    this.settings.put(VaultConfigProviderConfig.TOKEN_CONFIG, Constants.TOKEN);
+    this.settings.put(VaultConfigProviderConfig.SESSION_SHARED_ENABLED_CONFIG, "false");
+    this.settings.put(VaultConfigProviderConfig.HTTP_TRANSPORT_CONFIG, "Driver");
+    this.settings.put(VaultConfigProviderConfig.MAX_RETRIES_CONFIG, "0");
+  }
+
+  VaultConfigProvider configProvider() {
+    VaultConfigProvider result = new VaultConfigProvider() {
+      @Override
+      Vault createVault(VaultConfig config) {
+        return VaultConfigProviderTest.this.vault;
+      }
+    };
+    result.time = this.time;
+    result.configure(this.settings);
+    return result;
+  }
+
+  static LogicalResponse response(int status, Map<String, String> data, long leaseDuration) {
+    JsonObject body = Json.object()
+        .add("lease_id", "")
+        .add("renewable", false)
+        .add("lease_duration", leaseDuration);
+    JsonObject dataObject = Json.object();
+    data.forEach(dataObject::add);
+    body.add("data", dataObject);
+    RestResponse restResponse = new RestResponse(
+        status,
+        "application/json",
+        body.toString().getBytes(StandardCharsets.UTF_8)
+    );
+    return new LogicalResponse(restResponse, 0, Logical.logicalOperations.readV1);
+  }
+
+  static LogicalResponse responseV2(Map<String, String> data, int version) {
+    JsonObject dataObject = Json.object();
+    data.forEach(dataObject::add);
+    JsonObject body = Json.object()
+        .add("lease_id", "")
+        .add("renewable", false)
+        .add("lease_duration", 0)
+        .add("data", Json.object()
+            .add("data", dataObject)
+            .add("metadata", Json.object().add("version", version))
+        );
+    RestResponse restResponse = new RestResponse(
+        200,
+        "application/json",
+        body.toString().getBytes(StandardCharsets.UTF_8)
+    );
+    return new LogicalResponse(restResponse, 0, Logical.logicalOperations.readV2);
+  }
+
+  static LogicalResponse listResponse(String... keys) {
+    JsonObject body = Json.object()
+        .add("data", Json.object().add("keys", Json.array(keys)));
+    RestResponse restResponse = new RestResponse(
+        200,
+        "application/json",
+        body.toString().getBytes(StandardCharsets.UTF_8)
+    );
+    return new LogicalResponse(restResponse, 0, Logical.logicalOperations.listV1);
+  }
+
+  static LogicalResponse metadataResponse(int currentVersion) {
+    JsonObject body = Json.object()
+        .add("data", Json.object().add("current_version", currentVersion));
+    RestResponse restResponse = new RestResponse(
+        200,
+        "application/json",
+        body.toString().getBytes(StandardCharsets.UTF_8)
+    );
+    return new LogicalResponse(restResponse, 0, Logical.logicalOperations.readV1);
+  }
+
+  @Test
+  public void cached() throws VaultException {
+    final String path = "secret/cached";
+    when(this.logical.read(path)).thenReturn(response(200, ImmutableMap.of("username", "user", "password", "pass"), 0L));
+    VaultConfigProvider configProvider = configProvider();
+
+    ConfigData configData = configProvider.get(path, ImmutableSet.of("username"));
+    assertEquals(ImmutableMap.of("username", "user"), configData.data());
+    assertEquals(1000L, configData.ttl());
+    this.time.sleep(400L);
+    configData = configProvider.get(path);
+    assertEquals(ImmutableMap.of("username", "user", "password", "pass"), configData.data());
+    assertEquals(600L, configData.ttl());
+    verify(this.logical, times(1)).read(path);
+    assertEquals(1L, configProvider.session.cache.hits());
+
+    this.time.sleep(600L);
+    configProvider.get(path);
+    verify(this.logical, times(2)).read(path);
+  }
+
+  @Test
+  public void getAsync() throws Exception {
+    final String path = "secret/async";
+    final CountDownLatch release = new CountDownLatch(1);
+    when(this.logical.read(path)).thenAnswer(invocation -> {
+      release.await(30, TimeUnit.SECONDS);
+      return response(200, ImmutableMap.of("username", "user", "password", "pass"), 0L);
+    });
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      CompletableFuture<ConfigData> future = configProvider.getAsync(path, ImmutableSet.of("username"));
+      assertFalse(future.isDone(), "getAsync should not block the calling thread");
+      release.countDown();
+      assertEquals(ImmutableMap.of("username", "user"), future.get(30, TimeUnit.SECONDS).data());
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void getAsyncNotFound() throws Exception {
+    final String path = "secret/missing";
+    when(this.logical.read(path)).thenReturn(response(404, ImmutableMap.of(), 0L));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      ExecutionException exception = assertThrows(ExecutionException.class, () -> configProvider.getAsync(path).get(30, TimeUnit.SECONDS));
+      assertTrue(exception.getCause() instanceof ConfigException);
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void cacheDisabled() throws VaultException {
+    final String path = "secret/uncached";
+    this.settings.put(VaultConfigProviderConfig.CACHE_ENABLED_CONFIG, "false");
+    when(this.logical.read(path)).thenReturn(response(200, ImmutableMap.of("username", "user"), 5000L));
+    VaultConfigProvider configProvider = configProvider();
+    configProvider.get(path);
+    ConfigData configData = configProvider.get(path);
+    assertEquals(5000L, configData.ttl());
+    verify(this.logical, times(2)).read(path);
+  }
+
+  @Test
+  public void notFound() throws VaultException {
+    final String path = "secret/missing";
+    when(this.logical.read(path)).thenReturn(response(404, ImmutableMap.of(), 0L));
+    VaultConfigProvider configProvider = configProvider();
+    assertThrows(ConfigException.class, () -> configProvider.get(path));
+  }
+
+  @Test
+  public void notFoundIsCached() throws Exception {
+    final String path = "secret/typo";
+    this.settings.put(VaultConfigProviderConfig.NEGATIVE_CACHE_TTL_MS_CONFIG, "10000");
+    when(this.logical.read(path))
+        .thenReturn(response(404, ImmutableMap.of(), 0L))
+        .thenReturn(response(200, ImmutableMap.of("username", "user"), 0L));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      assertThrows(ConfigException.class, () -> configProvider.get(path));
+      ConfigException ex = assertThrows(ConfigException.class, () -> configProvider.get(path));
+      assertEquals(404, ((VaultException) ex.getCause()).getHttpStatusCode());
+      verify(this.logical, times(1)).read(path);
+      assertEquals(1D, metric(configProvider, "negative-cache-hits-total"));
+      this.time.sleep(10000L);
+      assertEquals(ImmutableMap.of("username", "user"), configProvider.get(path).data());
+      verify(this.logical, times(2)).read(path);
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void deniedIsCachedUntilReadSucceeds() throws Exception {
+    final String path = "secret/denied";
+    this.settings.put(VaultConfigProviderConfig.NEGATIVE_CACHE_TTL_MS_CONFIG, "600000");
+    when(this.logical.read(path))
+        .thenReturn(response(403, ImmutableMap.of(), 0L))
+        .thenReturn(response(200, ImmutableMap.of("username", "user"), 0L));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      assertThrows(ConfigException.class, () -> configProvider.get(path));
+      assertThrows(ConfigException.class, () -> configProvider.get(path));
+      verify(this.logical, times(1)).read(path);
+      configProvider.session.entry(path, true);
+      assertEquals(0L, configProvider.session.negativeCache.size());
+      assertEquals(ImmutableMap.of("username", "user"), configProvider.get(path).data());
+      verify(this.logical, times(2)).read(path);
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void negativeCacheDisabled() throws Exception {
+    final String path = "secret/missing";
+    this.settings.put(VaultConfigProviderConfig.NEGATIVE_CACHE_TTL_MS_CONFIG, "0");
+    when(this.logical.read(path)).thenReturn(response(404, ImmutableMap.of(), 0L));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      assertThrows(ConfigException.class, () -> configProvider.get(path));
+      assertThrows(ConfigException.class, () -> configProvider.get(path));
+      verify(this.logical, times(2)).read(path);
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void concurrentReadsAreCoalesced() throws Exception {
+    final String path = "secret/concurrent";
+    final LogicalResponse response = response(200, ImmutableMap.of("username", "user"), 0L);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    when(this.logical.read(path)).thenAnswer(invocation -> {
+      started.countDown();
+      release.await();
+      return response;
+    });
+    this.settings.put(VaultConfigProviderConfig.CACHE_ENABLED_CONFIG, "false");
+    final VaultConfigProvider configProvider = configProvider();
+    final int threads = 8;
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<ConfigData>> futures = new ArrayList<>();
+      futures.add(executorService.submit(() -> configProvider.get(path)));
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      for (int i = 1; i < threads; i++) {
+        futures.add(executorService.submit(() -> configProvider.get(path)));
+      }
+      Thread.sleep(100);
+      release.countDown();
+      for (Future<ConfigData> future : futures) {
+        assertEquals(ImmutableMap.of("username", "user"), future.get(10, TimeUnit.SECONDS).data());
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+    verify(this.logical, times(1)).read(path);
+  }
+
+  @Test
+  public void concurrentReadsOfKeysAreCoalesced() throws Exception {
+    final String path = "secret/concurrent";
+    final LogicalResponse response = response(200, ImmutableMap.of("username", "user", "password", "secret"), 0L);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    when(this.logical.read(path)).thenAnswer(invocation -> {
+      started.countDown();
+      release.await();
+      return response;
+    });
+    this.settings.put(VaultConfigProviderConfig.CACHE_ENABLED_CONFIG, "false");
+    final VaultConfigProvider configProvider = configProvider();
+    final int threads = 8;
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<ConfigData>> futures = new ArrayList<>();
+      futures.add(executorService.submit(() -> configProvider.get(path, ImmutableSet.of("username"))));
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      for (int i = 1; i < threads; i++) {
+        futures.add(executorService.submit(() -> configProvider.get(path, new HashSet<>(Collections.singleton("username")))));
+      }
+      Thread.sleep(100);
+      release.countDown();
+      for (Future<ConfigData> future : futures) {
+        assertEquals(ImmutableMap.of("username", "user"), future.get(10, TimeUnit.SECONDS).data());
+      }
+    } finally {
+      executorService.shutdownNow();
+      configProvider.close();
+    }
+    verify(this.logical, times(1)).read(path);
+  }
+
+  @Test
+  public void refreshAhead() throws Exception {
+    final String path = "secret/refresh";
+    this.settings.put(VaultConfigProviderConfig.REFRESH_AHEAD_ENABLED_CONFIG, "true");
+    when(this.logical.read(path)).thenReturn(
+        response(200, ImmutableMap.of("password", "first"), 60000L),
+        response(200, ImmutableMap.of("password", "second"), 60000L)
+    );
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      assertEquals(ImmutableMap.of("password", "first"), configProvider.get(path).data());
+      SecretCache.Key key = new SecretCache.Key("", "", path);
+      this.time.sleep(45000L);
+      configProvider.session.refreshAheadScheduler.refresh(key, configProvider.session.cache.peek(key)).get(5, TimeUnit.SECONDS);
+      ConfigData configData = configProvider.get(path);
+      assertEquals(ImmutableMap.of("password", "second"), configData.data());
+      assertEquals(60000L, configData.ttl());
+      verify(this.logical, times(2)).read(path);
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void refreshAheadWithMoreDueKeysThanThreads() throws Exception {
+    this.settings.put(VaultConfigProviderConfig.REFRESH_AHEAD_ENABLED_CONFIG, "true");
+    this.settings.put(VaultConfigProviderConfig.HTTP_POOL_SIZE_CONFIG, "2");
+    final List<String> paths = ImmutableList.of("secret/refresh0", "secret/refresh1", "secret/refresh2", "secret/refresh3");
+    for (String path : paths) {
+      when(this.logical.read(path)).thenReturn(
+          response(200, ImmutableMap.of("password", "first"), 60000L),
+          response(200, ImmutableMap.of("password", "second"), 60000L)
+      );
+    }
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      for (String path : paths) {
+        configProvider.get(path);
+      }
+      this.time.sleep(45000L);
+      for (String path : paths) {
+        SecretCache.Key key = new SecretCache.Key("", "", path);
+        configProvider.session.refreshAheadScheduler.schedule(key, configProvider.session.cache.peek(key), 0L);
+      }
+      for (String path : paths) {
+        verify(this.logical, timeout(5000L).times(2)).read(path);
+      }
+      CompletableFuture<ConfigData> result = configProvider.getAsync("secret/refresh3");
+      assertEquals(ImmutableMap.of("password", "second"), result.get(5, TimeUnit.SECONDS).data());
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void refreshAheadServesStaleOnFailure() throws Exception {
+    final String path = "secret/refresh";
+    this.settings.put(VaultConfigProviderConfig.REFRESH_AHEAD_ENABLED_CONFIG, "true");
+    this.settings.put(VaultConfigProviderConfig.REFRESH_AHEAD_MAX_STALE_MS_CONFIG, "60000");
+    when(this.logical.read(path))
+        .thenReturn(response(200, ImmutableMap.of("password", "first"), 60000L))
+        .thenThrow(new VaultException("Vault is unavailable", 503));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      configProvider.get(path);
+      SecretCache.Key key = new SecretCache.Key("", "", path);
+      this.time.sleep(45000L);
+      configProvider.session.refreshAheadScheduler.refresh(key, configProvider.session.cache.peek(key)).get(5, TimeUnit.SECONDS);
+      this.time.sleep(30000L);
+      assertEquals(ImmutableMap.of("password", "first"), configProvider.get(path).data());
+      verify(this.logical, times(2)).read(path);
+      this.time.sleep(60000L);
+      assertThrows(ConfigException.class, () -> configProvider.get(path));
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void subscribe() throws Exception {
+    final String path = "secret/subscribe";
+    when(this.logical.read(path)).thenReturn(
+        response(200, ImmutableMap.of("username", "user", "password", "first"), 0L),
+        response(200, ImmutableMap.of("username", "user", "password", "first"), 0L),
+        response(200, ImmutableMap.of("username", "other", "password", "first"), 0L),
+        response(200, ImmutableMap.of("username", "other", "password", "second"), 0L)
+    );
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      List<ConfigData> changes = new ArrayList<>();
+      ConfigChangeCallback callback = (p, data) -> changes.add(data);
+      configProvider.subscribe(path, ImmutableSet.of("password"), callback);
+      configProvider.subscriptionManager.poll();
+      assertTrue(changes.isEmpty(), "value did not change");
+      configProvider.subscriptionManager.poll();
+      assertTrue(changes.isEmpty(), "unsubscribed key changed");
+      configProvider.subscriptionManager.poll();
+      assertEquals(1, changes.size());
+      assertEquals(ImmutableMap.of("password", "second"), changes.get(0).data());
+
+      configProvider.unsubscribe(path, ImmutableSet.of("password"), callback);
+      configProvider.subscriptionManager.poll();
+      verify(this.logical, times(4)).read(path);
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void kvVersionCheck() throws Exception {
+    final String path = "secret/app";
+    this.settings.put(VaultConfigProviderConfig.KV_VERSION_CHECK_ENABLED_CONFIG, "true");
+    when(this.logical.read(path)).thenReturn(responseV2(ImmutableMap.of("password", "first"), 1));
+    when(this.logical.read("secret/metadata/app")).thenReturn(metadataResponse(1), metadataResponse(2));
+    when(this.logical.read(path, true, 2)).thenReturn(responseV2(ImmutableMap.of("password", "second"), 2));
+    VaultConfigProvider configProvider = configProvider();
+
+    assertEquals(ImmutableMap.of("password", "first"), configProvider.get(path).data());
+    this.time.sleep(1000L);
+    assertEquals(ImmutableMap.of("password", "first"), configProvider.get(path).data());
+    verify(this.logical, times(1)).read(path);
+    this.time.sleep(1000L);
+    assertEquals(ImmutableMap.of("password", "second"), configProvider.get(path).data());
+    verify(this.logical, times(1)).read(path);
+    verify(this.logical, times(2)).read("secret/metadata/app");
+    verify(this.logical, times(1)).read(path, true, 2);
+  }
+
+  @Test
+  public void kvVersionCheckAfterStale() throws Exception {
+    final String path = "secret/app";
+    this.settings.put(VaultConfigProviderConfig.KV_VERSION_CHECK_ENABLED_CONFIG, "true");
+    this.settings.put(VaultConfigProviderConfig.MIN_TTL_MS_CONFIG, "1000");
+    this.settings.put(VaultConfigProviderConfig.STALE_IF_ERROR_MS_CONFIG, "60000");
+    when(this.logical.read(path))
+        .thenReturn(responseV2(ImmutableMap.of("password", "first"), 1))
+        .thenThrow(new VaultException("Vault is unavailable", 503));
+    when(this.logical.read("secret/metadata/app"))
+        .thenThrow(new VaultException("Vault is unavailable", 503))
+        .thenReturn(metadataResponse(1));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      assertEquals(1000L, configProvider.get(path).ttl());
+      this.time.sleep(1000L);
+      assertEquals(ImmutableMap.of("password", "first"), configProvider.get(path).data());
+      this.time.sleep(60000L);
+      ConfigData configData = configProvider.get(path);
+      assertEquals(ImmutableMap.of("password", "first"), configData.data());
+      assertEquals(1000L, configData.ttl(), "the time the entry was served stale should not be added to the ttl");
+      verify(this.logical, times(2)).read("secret/metadata/app");
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void pinnedVersion() throws Exception {
+    final String path = "secret/app?version=7";
+    when(this.logical.read("secret/app", true, 7)).thenReturn(responseV2(ImmutableMap.of("password", "pinned"), 7));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      ConfigData configData = configProvider.get(path);
+      assertEquals(ImmutableMap.of("password", "pinned"), configData.data());
+      assertNull(configData.ttl());
+      this.time.sleep(TimeUnit.DAYS.toMillis(30));
+      assertEquals(ImmutableMap.of("password", "pinned"), configProvider.get(path, ImmutableSet.of("password")).data());
+      configProvider.session.entry(path, true);
+      verify(this.logical, times(1)).read("secret/app", true, 7);
+      verify(this.logical, times(0)).read("secret/app");
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void pinnedVersionIsNotValid() throws Exception {
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      assertThrows(ConfigException.class, () -> configProvider.get("secret/app?version=latest"));
+      assertThrows(ConfigException.class, () -> configProvider.get("secret/app?version=0"));
+      assertThrows(ConfigException.class, () -> configProvider.get("secret/app?revision=1"));
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void pinnedVersionRequiresKvV2() throws Exception {
+    this.settings.put(VaultConfigProviderConfig.KV_VERSION_CONFIG, "1");
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      assertThrows(ConfigException.class, () -> configProvider.get("secret/app?version=1"));
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void kvMounts() throws Exception {
+    final Vault legacyVault = mock(Vault.class);
+    final Logical legacyLogical = mock(Logical.class);
+    when(legacyVault.withRetries(anyInt(), anyInt())).thenReturn(legacyVault);
+    when(legacyVault.logical()).thenReturn(legacyLogical);
+    when(legacyLogical.read("legacy/app")).thenReturn(response(200, ImmutableMap.of("password", "legacy"), 0L));
+    when(this.logical.read("secret/app")).thenReturn(responseV2(ImmutableMap.of("password", "current"), 1));
+    this.settings.put(VaultConfigProviderConfig.KV_MOUNTS_CONFIG, "secret:2,legacy:1");
+    VaultConfigProvider configProvider = new VaultConfigProvider() {
+      @Override
+      Vault createVault(VaultConfig config) {
+        return 1 == config.getGlobalEngineVersion() ? legacyVault : VaultConfigProviderTest.this.vault;
+      }
+    };
+    configProvider.time = this.time;
+    configProvider.configure(this.settings);
+
+    assertEquals(ImmutableMap.of("password", "legacy"), configProvider.get("legacy/app").data());
+    assertEquals(ImmutableMap.of("password", "current"), configProvider.get("secret/app").data());
+  }
+
+  @Test
+  public void snapshotWarmStart(@TempDir Path directory) throws Exception {
+    final String path = "secret/snapshot";
+    this.settings.put(VaultConfigProviderConfig.SNAPSHOT_PATH_CONFIG, directory.resolve("vault.snapshot").toString());
+    this.settings.put(VaultConfigProviderConfig.SNAPSHOT_PASSWORD_CONFIG, "password");
+    when(this.logical.read(path)).thenReturn(response(200, ImmutableMap.of("password", "first"), 0L));
+    VaultConfigProvider configProvider = configProvider();
+    assertEquals(ImmutableMap.of("password", "first"), configProvider.get(path).data());
+    configProvider.close();
+
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch revalidated = new CountDownLatch(1);
+    when(this.logical.read(path)).thenAnswer(invocation -> {
+      release.await(30, TimeUnit.SECONDS);
+      revalidated.countDown();
+      return response(200, ImmutableMap.of("password", "second"), 0L);
+    });
+    configProvider = configProvider();
+    assertEquals(ImmutableMap.of("password", "first"), configProvider.get(path).data(), "snapshot should be served while Vault is read");
+    release.countDown();
+    assertTrue(revalidated.await(30, TimeUnit.SECONDS));
+    for (int i = 0; i < 100 && !"second".equals(configProvider.session.cache.peek(configProvider.session.key(path)).data.get("password")); i++) {
+      Thread.sleep(10L);
+    }
+    assertEquals(ImmutableMap.of("password", "second"), configProvider.get(path).data());
+    verify(this.logical, times(2)).read(path);
+    configProvider.close();
+  }
+
+  @Test
+  public void sharedSession() throws Exception {
+    final String path = "secret/shared";
+    this.settings.put(VaultConfigProviderConfig.SESSION_SHARED_ENABLED_CONFIG, "true");
+    when(this.logical.read(path)).thenReturn(response(200, ImmutableMap.of("password", "shared"), 0L));
+    final AtomicInteger clients = new AtomicInteger();
+    Function<Map<String, String>, VaultConfigProvider> factory = settings -> {
+      VaultConfigProvider result = new VaultConfigProvider() {
+        @Override
+        Vault createVault(VaultConfig config) {
+          clients.incrementAndGet();
+          return VaultConfigProviderTest.this.vault;
+        }
+      };
+      result.time = this.time;
+      result.configure(settings);
+      return result;
+    };
+    VaultConfigProvider first = factory.apply(this.settings);
+    VaultConfigProvider second = factory.apply(this.settings);
+    Map<String, String> otherSettings = new LinkedHashMap<>(this.settings);
+    otherSettings.put(VaultConfigProviderConfig.PREFIX_CONFIG, "other");
+    VaultConfigProvider other = factory.apply(otherSettings);
+    try {
+      assertSame(first.session, second.session);
+      assertNotSame(first.session, other.session);
+      assertEquals(2, clients.get());
+      verify(this.vault.auth(), times(2)).lookupSelf();
+
+      assertEquals(ImmutableMap.of("password", "shared"), first.get(path).data());
+      assertEquals(ImmutableMap.of("password", "shared"), second.get(path).data());
+      assertEquals(ImmutableMap.of("password", "shared"), second.get(path).data());
+      verify(this.logical, times(1)).read(path);
+      assertNotEquals(first.metrics.tags, second.metrics.tags);
+      assertEquals(1D, metric(first, "get-total", VaultMetrics.PATH_PREFIX_TAG, "secret"));
+      assertEquals(1D, metric(first, "cache-misses-total", VaultMetrics.PATH_PREFIX_TAG, "secret"));
+      assertEquals(2D, metric(second, "get-total", VaultMetrics.PATH_PREFIX_TAG, "secret"));
+      assertEquals(2D, metric(second, "cache-hits-total", VaultMetrics.PATH_PREFIX_TAG, "secret"));
+
+      VaultSession session = first.session;
+      first.close();
+      assertTrue(VaultSessions.SESSIONS.values().stream().anyMatch(r -> r.session.getNow(null) == session));
+      second.close();
+      assertFalse(VaultSessions.SESSIONS.values().stream().anyMatch(r -> r.session.getNow(null) == session));
+    } finally {
+      first.close();
+      second.close();
+      other.close();
+    }
+  }
+
+  @Test
+  public void sharedSessionOpenDoesNotBlockOtherConfigs() throws Exception {
+    this.settings.put(VaultConfigProviderConfig.SESSION_SHARED_ENABLED_CONFIG, "true");
+    final CountDownLatch opening = new CountDownLatch(1);
+    final CountDownLatch opened = new CountDownLatch(1);
+    Function<Boolean, VaultConfigProvider> factory = slow -> new VaultConfigProvider() {
+      @Override
+      Vault createVault(VaultConfig config) {
+        if (slow) {
+          opening.countDown();
+          try {
+            opened.await(30, TimeUnit.SECONDS);
+          } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return VaultConfigProviderTest.this.vault;
+      }
+    };
+    Map<String, String> otherSettings = new LinkedHashMap<>(this.settings);
+    otherSettings.put(VaultConfigProviderConfig.PREFIX_CONFIG, "other");
+    VaultConfigProvider first = factory.apply(true);
+    VaultConfigProvider second = factory.apply(false);
+    VaultConfigProvider other = factory.apply(false);
+    ExecutorService executorService = Executors.newFixedThreadPool(3);
+    try {
+      Future<?> firstConfigured = executorService.submit(() -> first.configure(this.settings));
+      assertTrue(opening.await(30, TimeUnit.SECONDS));
+      Future<?> secondConfigured = executorService.submit(() -> second.configure(this.settings));
+      executorService.submit(() -> other.configure(otherSettings)).get(30, TimeUnit.SECONDS);
+      assertFalse(secondConfigured.isDone(), "a session with the same config should wait for it to be opened");
+      opened.countDown();
+      firstConfigured.get(30, TimeUnit.SECONDS);
+      secondConfigured.get(30, TimeUnit.SECONDS);
+      assertSame(first.session, second.session);
+      assertNotSame(first.session, other.session);
+    } finally {
+      opened.countDown();
+      executorService.shutdownNow();
+      first.close();
+      second.close();
+      other.close();
+    }
+  }
+
+  @Test
+  public void prefetch() throws Exception {
+    this.settings.put(VaultConfigProviderConfig.KV_VERSION_CONFIG, "1");
+    this.settings.put(VaultConfigProviderConfig.PREFETCH_PATHS_CONFIG, "secret/declared");
+    this.settings.put(VaultConfigProviderConfig.PREFETCH_LIST_PATHS_CONFIG, "secret/apps/");
+    when(this.logical.list("secret/apps")).thenReturn(listResponse("first", "team/"));
+    when(this.logical.list("secret/apps/team")).thenReturn(listResponse("second"));
+    Map<String, String> data = ImmutableMap.of("password", "pass");
+    for (String path : new String[]{"secret/declared", "secret/apps/first", "secret/apps/team/second"}) {
+      when(this.logical.read(path)).thenReturn(response(200, data, 0L));
+    }
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      assertEquals(3L, configProvider.session.cache.size());
+      for (String path : new String[]{"secret/declared", "secret/apps/first", "secret/apps/team/second"}) {
+        assertEquals(data, configProvider.get(path).data());
+        verify(this.logical, times(1)).read(path);
+      }
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void directory() throws Exception {
+    this.settings.put(VaultConfigProviderConfig.KV_VERSION_CONFIG, "1");
+    when(this.logical.list("secret/connectors")).thenReturn(listResponse("first", "second", "team/"));
+    when(this.logical.read("secret/connectors/first")).thenReturn(response(200, ImmutableMap.of("password", "first"), 60000L));
+    when(this.logical.read("secret/connectors/second")).thenReturn(response(200, ImmutableMap.of("password", "second"), 30000L));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      ConfigData configData = configProvider.get("secret/connectors/*");
+      assertEquals(ImmutableMap.of("first/password", "first", "second/password", "second"), configData.data());
+      assertEquals(30000L, configData.ttl());
+      assertEquals(ImmutableMap.of("second/password", "second"), configProvider.get("secret/connectors/*", ImmutableSet.of("second/password")).data());
+      assertEquals(ImmutableMap.of("password", "first"), configProvider.get("secret/connectors/first").data());
+      verify(this.logical, times(1)).list("secret/connectors");
+      verify(this.logical, times(1)).read("secret/connectors/first");
+      verify(this.logical, times(1)).read("secret/connectors/second");
+      this.time.sleep(30000L);
+      configProvider.get("secret/connectors/*");
+      verify(this.logical, times(2)).list("secret/connectors");
+      verify(this.logical, times(1)).read("secret/connectors/first");
+      verify(this.logical, times(2)).read("secret/connectors/second");
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void jsonPointer() throws Exception {
+    this.settings.put(VaultConfigProviderConfig.CACHE_ENABLED_CONFIG, "false");
+    final String config = "{\"credentials\":{\"username\":\"app\",\"password\":\"secret\"}}";
+    when(this.logical.read("secret/db")).thenReturn(response(200, ImmutableMap.of("config", config, "other", "value"), 0L));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      assertEquals(
+          ImmutableMap.of("config#/credentials/password", "secret"),
+          configProvider.get("secret/db", ImmutableSet.of("config#/credentials/password")).data()
+      );
+      assertEquals(
+          ImmutableMap.of("config#/credentials/username", "app", "other", "value"),
+          configProvider.get("secret/db", ImmutableSet.of("config#/credentials/username", "other", "config#/missing")).data()
+      );
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void directoryReadsAreBounded() throws Exception {
+    this.settings.put(VaultConfigProviderConfig.KV_VERSION_CONFIG, "1");
+    this.settings.put(VaultConfigProviderConfig.HTTP_POOL_SIZE_CONFIG, "2");
+    this.settings.put(VaultConfigProviderConfig.VIRTUAL_THREADS_ENABLED_CONFIG, "true");
+    final String[] names = {"a", "b", "c", "d", "e", "f"};
+    when(this.logical.list("secret/connectors")).thenReturn(listResponse(names));
+    final AtomicInteger active = new AtomicInteger();
+    final AtomicInteger maxActive = new AtomicInteger();
+    for (String name : names) {
+      when(this.logical.read("secret/connectors/" + name)).thenAnswer(invocation -> {
+        maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+        Thread.sleep(20L);
+        active.decrementAndGet();
+        return response(200, ImmutableMap.of("password", name), 60000L);
+      });
+    }
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      assertEquals(6, configProvider.get("secret/connectors/*").data().size());
+      assertTrue(maxActive.get() <= 2, "at most vault.http.pool.size secrets should be read at once");
+      for (String name : names) {
+        verify(this.logical, times(1)).read("secret/connectors/" + name);
+      }
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void directoryLimits() throws Exception {
+    this.settings.put(VaultConfigProviderConfig.KV_VERSION_CONFIG, "1");
+    this.settings.put(VaultConfigProviderConfig.DIRECTORY_MAX_PATHS_CONFIG, "1");
+    when(this.logical.list("secret/connectors")).thenReturn(listResponse("first", "second"));
+    when(this.logical.list("secret/missing")).thenReturn(response(404, ImmutableMap.of(), 0L));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      assertThrows(ConfigException.class, () -> configProvider.get("secret/connectors/*"));
+      assertThrows(ConfigException.class, () -> configProvider.get("secret/missing/*"));
+      verify(this.logical, times(0)).read("secret/connectors/first");
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void prefetchFailuresDoNotFailConfigure() throws Exception {
+    this.settings.put(VaultConfigProviderConfig.KV_VERSION_CONFIG, "1");
+    this.settings.put(VaultConfigProviderConfig.PREFETCH_PATHS_CONFIG, "secret/missing,secret/found");
+    when(this.logical.read("secret/missing")).thenReturn(response(404, ImmutableMap.of(), 0L));
+    when(this.logical.read("secret/found")).thenReturn(response(200, ImmutableMap.of("password", "pass"), 0L));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      assertEquals(1L, configProvider.session.cache.size());
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void staleIfError() throws Exception {
+    final String path = "secret/stale";
+    this.settings.put(VaultConfigProviderConfig.STALE_IF_ERROR_MS_CONFIG, "60000");
+    when(this.logical.read(path))
+        .thenReturn(response(200, ImmutableMap.of("password", "first"), 60000L))
+        .thenThrow(new VaultException("Vault is unavailable", 503));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      configProvider.get(path);
+      this.time.sleep(90000L);
+      ConfigData configData = configProvider.get(path);
+      assertEquals(ImmutableMap.of("password", "first"), configData.data());
+      assertEquals(1000L, configData.ttl(), "stale secrets should be returned with the minimum ttl");
+      verify(this.logical, times(2)).read(path);
+      this.time.sleep(30000L);
+      assertThrows(ConfigException.class, () -> configProvider.get(path));
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void staleIfErrorRecovers() throws Exception {
+    final String path = "secret/stale";
+    this.settings.put(VaultConfigProviderConfig.STALE_IF_ERROR_MS_CONFIG, "300000");
+    when(this.logical.read(path))
+        .thenReturn(response(200, ImmutableMap.of("password", "first"), 60000L))
+        .thenThrow(new VaultException("Vault is unavailable", 503))
+        .thenReturn(response(200, ImmutableMap.of("password", "second"), 60000L));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      configProvider.get(path);
+      this.time.sleep(60000L);
+      assertEquals(ImmutableMap.of("password", "first"), configProvider.get(path).data());
+      configProvider.get(path);
+      verify(this.logical, times(2)).read(path);
+      this.time.sleep(1000L);
+      assertEquals(ImmutableMap.of("password", "first"), configProvider.get(path).data());
+      verify(this.logical, timeout(5000L).times(3)).read(path);
+      ConfigData configData = configProvider.get(path);
+      final long deadline = System.currentTimeMillis() + 5000L;
+      while (!configData.data().equals(ImmutableMap.of("password", "second")) && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10L);
+        configData = configProvider.get(path);
+      }
+      assertEquals(ImmutableMap.of("password", "second"), configData.data());
+      assertEquals(60000L, configData.ttl());
+      verify(this.logical, times(3)).read(path);
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void staleIfErrorDoesNotMaskNotFound() throws Exception {
+    final String path = "secret/deleted";
+    when(this.logical.read(path))
+        .thenReturn(response(200, ImmutableMap.of("password", "first"), 60000L))
+        .thenReturn(response(404, ImmutableMap.of(), 0L));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      configProvider.get(path);
+      this.time.sleep(90000L);
+      assertThrows(ConfigException.class, () -> configProvider.get(path));
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void circuitBreaker() throws Exception {
+    final String path = "secret/unavailable";
+    this.settings.put(VaultConfigProviderConfig.CIRCUIT_BREAKER_ENABLED_CONFIG, "true");
+    this.settings.put(VaultConfigProviderConfig.CIRCUIT_BREAKER_FAILURE_THRESHOLD_CONFIG, "2");
+    this.settings.put(VaultConfigProviderConfig.CIRCUIT_BREAKER_OPEN_MS_CONFIG, "10000");
+    when(this.logical.read(path))
+        .thenThrow(new VaultException("Vault is unavailable", 503))
+        .thenThrow(new VaultException("Vault is unavailable", 503))
+        .thenReturn(response(200, ImmutableMap.of("password", "recovered"), 0L));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      assertThrows(ConfigException.class, () -> configProvider.get(path));
+      assertThrows(ConfigException.class, () -> configProvider.get(path));
+      ConfigException ex = assertThrows(ConfigException.class, () -> configProvider.get(path));
+      assertTrue(ex.getCause() instanceof CircuitBreakerTransport.CircuitBreakerOpenException);
+      verify(this.logical, times(2)).read(path);
+      assertEquals(CircuitBreaker.State.Open, configProvider.session.circuitBreaker.state());
+      this.time.sleep(10000L);
+      assertEquals(ImmutableMap.of("password", "recovered"), configProvider.get(path).data());
+      assertEquals(CircuitBreaker.State.Closed, configProvider.session.circuitBreaker.state());
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  static double metric(VaultConfigProvider configProvider, String name, String... tags) {
+    VaultMetrics metrics = configProvider.metrics;
+    MetricName metricName = metrics.metrics.metricName(name, VaultMetrics.GROUP, metrics.tags(tags));
+    KafkaMetric metric = metrics.metrics.metric(metricName);
+    assertNotNull(metric, metricName + " was not registered");
+    return ((Number) metric.metricValue()).doubleValue();
+  }
+
+  @Test
+  public void metrics() throws Exception {
+    final String path = "secret/metrics";
+    when(this.logical.read(path)).thenReturn(response(200, ImmutableMap.of("password", "pass"), 60000L));
+    when(this.logical.read("secret/missing")).thenReturn(response(404, ImmutableMap.of(), 0L));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      configProvider.get(path);
+      configProvider.get(path);
+      assertThrows(ConfigException.class, () -> configProvider.get("secret/missing"));
+      assertEquals(3D, metric(configProvider, "get-total", VaultMetrics.PATH_PREFIX_TAG, "secret"));
+      assertEquals(1D, metric(configProvider, "cache-hits-total", VaultMetrics.PATH_PREFIX_TAG, "secret"));
+      assertEquals(2D, metric(configProvider, "cache-misses-total", VaultMetrics.PATH_PREFIX_TAG, "secret"));
+      assertEquals(1D / 3D, metric(configProvider, "cache-hit-ratio"), 0.0001D);
+      assertEquals(1D, metric(configProvider, "requests-total", VaultMetrics.PATH_PREFIX_TAG, "secret", VaultMetrics.STATUS_TAG, "200"));
+      assertEquals(1D, metric(configProvider, "requests-total", VaultMetrics.PATH_PREFIX_TAG, "secret", VaultMetrics.STATUS_TAG, "404"));
+      assertTrue(metric(configProvider, "bytes-received-total", VaultMetrics.PATH_PREFIX_TAG, "secret") > 0D);
+      assertEquals(0D, metric(configProvider, "get-latency-ms-p99", VaultMetrics.PATH_PREFIX_TAG, "secret"), 1D);
+      assertEquals(-1D, metric(configProvider, "token-expires-in-ms"));
+    } finally {
+      configProvider.close();
+    }
+  }
+
+  @Test
+  public void unfilteredReadsShareCachedData() throws Exception {
+    final String path = "secret/shared";
+    when(this.logical.read(path)).thenReturn(response(200, ImmutableMap.of("username", "user", "password", "pass"), 60000L));
+    VaultConfigProvider configProvider = configProvider();
+    try {
+      Map<String, String> first = configProvider.get(path).data();
+      assertSame(first, configProvider.get(path).data());
+      assertSame(first, configProvider.get(path, ImmutableSet.of()).data());
+      assertThrows(UnsupportedOperationException.class, () -> first.put("username", "changed"));
+      assertEquals(ImmutableMap.of("password", "pass"), configProvider.get(path, ImmutableSet.of("password")).data());
+      assertEquals(
+          ImmutableMap.of("username", "user", "password", "pass"),
+          configProvider.get(path, ImmutableSet.of("username", "password", "missing")).data()
+      );
+      assertEquals(ImmutableMap.of(), configProvider.get(path, ImmutableSet.of("missing")).data());
+    } finally {
+      configProvider.close();
+    }
+  }
+}
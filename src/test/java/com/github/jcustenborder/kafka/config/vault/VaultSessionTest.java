@@ -0,0 +1,76 @@
+/**
+ * Copyright © 2021 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.config.vault;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VaultSessionTest {
+
+  static boolean isVirtual(Thread thread) throws Exception {
+    Method method;
+    try {
+      method = Thread.class.getMethod("isVirtual");
+    } catch (NoSuchMethodException ex) {
+      return false;
+    }
+    return (boolean) method.invoke(thread);
+  }
+
+  static boolean virtualThreadsSupported() {
+    try {
+      Method method = Thread.class.getMethod("ofVirtual");
+      method.invoke(null);
+      return true;
+    } catch (ReflectiveOperationException | RuntimeException ex) {
+      return false;
+    }
+  }
+
+  @Test
+  public void ioExecutorVirtualThreads() throws Exception {
+    ExecutorService executor = VaultSession.ioExecutor(true, 2);
+    try {
+      Thread thread = executor.submit(Thread::currentThread).get(30, TimeUnit.SECONDS);
+      if (virtualThreadsSupported()) {
+        assertTrue(isVirtual(thread), "virtual threads should be used when the JVM supports them");
+      } else {
+        assertTrue(thread.getName().startsWith("vault-io-"), "should fall back to platform threads");
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void ioExecutorPlatformThreads() throws Exception {
+    ExecutorService executor = VaultSession.ioExecutor(false, 2);
+    try {
+      Thread thread = executor.submit(Thread::currentThread).get(30, TimeUnit.SECONDS);
+      assertEquals(false, isVirtual(thread));
+      assertTrue(thread.getName().startsWith("vault-io-"));
+      assertTrue(thread.isDaemon());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}